@@ -0,0 +1,84 @@
+import java.util.Arrays;
+
+// Simulation agents as parallel primitive arrays instead of one object each:
+// ID, cell and a packed state byte, 13 bytes per agent with no headers or
+// pointers. Agents are numbered 0..size()-1 in the order they were added.
+//
+// A move is one sweep over a range of the arrays, so the tick walks memory
+// front to back. Each step comes from SimRandom keyed by (seed, agent ID, tick),
+// so disjoint ranges can move on different threads and any split of the
+// agents gives the same moves. xs() and ys() hand out the live arrays for
+// other sweeps (the catch index); only the first size() entries mean anything.
+public class AgentStore {
+    public static final byte ALIVE = 1;
+    public static final byte PREDATOR = 2;
+
+    private int[] ids;
+    private int[] xs;
+    private int[] ys;
+    private byte[] states;
+    private int size;
+
+    public AgentStore() {
+        this(16);
+    }
+
+    public AgentStore(int capacity) {
+        capacity = Math.max(1, capacity);
+        ids = new int[capacity];
+        xs = new int[capacity];
+        ys = new int[capacity];
+        states = new byte[capacity];
+    }
+
+    public int size() { return size; }
+    public int id(int agent) { return ids[agent]; }
+    public int x(int agent) { return xs[agent]; }
+    public int y(int agent) { return ys[agent]; }
+    public byte state(int agent) { return states[agent]; }
+    public boolean isAlive(int agent) { return (states[agent] & ALIVE) != 0; }
+    public boolean isPredator(int agent) { return (states[agent] & PREDATOR) != 0; }
+    public int[] xs() { return xs; }
+    public int[] ys() { return ys; }
+
+    // Adds an alive prey at (x, y); returns its agent number
+    public int add(int id, int x, int y) {
+        if (size == ids.length) {
+            int capacity = size + (size >> 1) + 1;
+            ids = Arrays.copyOf(ids, capacity);
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            states = Arrays.copyOf(states, capacity);
+        }
+        ids[size] = id;
+        xs[size] = x;
+        ys[size] = y;
+        states[size] = ALIVE;
+        return size++;
+    }
+
+    public void setPredator(int agent, boolean predator) {
+        states[agent] = (byte) (predator ? states[agent] | PREDATOR : states[agent] & ~PREDATOR);
+    }
+
+    public void kill(int agent) {
+        states[agent] &= ~ALIVE;
+    }
+
+    // Every alive agent in [from, to) takes one step to one of its 8
+    // neighbouring cells or stays put, clamped to a width x height grid
+    public void move(int from, int to, int width, int height, long seed, long tick) {
+        int maxX = width - 1;
+        int maxY = height - 1;
+        for (int i = from; i < to; i++) {
+            if ((states[i] & ALIVE) == 0) {
+                continue;
+            }
+            int step = SimRandom.nextInt(seed, ids[i], tick, 9); // dx and dy in -1..1 from one draw
+            int x = xs[i] + step % 3 - 1;
+            int y = ys[i] + step / 3 - 1;
+            xs[i] = x < 0 ? 0 : x > maxX ? maxX : x;
+            ys[i] = y < 0 ? 0 : y > maxY ? maxY : y;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Whitespace tokenizer for batch input. It reads 64 KB at a time and parses
+// numbers straight from the bytes, so there is none of Scanner's per-token
+// regex matching or String allocation. Lines are decoded as UTF-8.
+//
+// Mirrors the Scanner calls tut4 uses: nextInt(), nextDouble() and nextLine(),
+// where nextLine() returns the rest of the current line.
+public class InputTokenizer {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_EXACT_DIGITS = 15; // below 2^53, so the fast double path is exact
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private byte[] token = new byte[64];
+    private int tokenLength;
+
+    public InputTokenizer(InputStream in) {
+        this.in = in;
+    }
+
+    // False at end of input; otherwise a byte is available at position
+    private boolean fill() throws IOException {
+        if (position < limit) {
+            return true;
+        }
+        limit = in.read(buffer, 0, buffer.length);
+        position = 0;
+        if (limit <= 0) {
+            limit = 0;
+            return false;
+        }
+        return true;
+    }
+
+    // Skips whitespace; returns true if another token follows
+    public boolean hasNext() throws IOException {
+        while (fill()) {
+            if (buffer[position] > ' ') {
+                return true;
+            }
+            position++;
+        }
+        return false;
+    }
+
+    // Copies the next token into `token`
+    private void readToken() throws IOException {
+        if (!hasNext()) {
+            throw new EOFException("Unexpected end of input");
+        }
+        tokenLength = 0;
+        while (fill() && buffer[position] > ' ') {
+            if (tokenLength == token.length) {
+                token = Arrays.copyOf(token, tokenLength * 2);
+            }
+            token[tokenLength++] = buffer[position++];
+        }
+    }
+
+    private String tokenText() {
+        return new String(token, 0, tokenLength, StandardCharsets.UTF_8);
+    }
+
+    public int nextInt() throws IOException {
+        readToken();
+        int i = 0;
+        boolean negative = token[0] == '-';
+        if (negative || token[0] == '+') {
+            i++;
+        }
+        if (i == tokenLength) {
+            throw new NumberFormatException("Not a number: " + tokenText());
+        }
+        long value = 0;
+        for (; i < tokenLength; i++) {
+            int digit = token[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Not a number: " + tokenText());
+            }
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                throw new NumberFormatException("Number out of range: " + tokenText());
+            }
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("Number out of range: " + tokenText());
+        }
+        return (int) value;
+    }
+
+    // Plain decimals with up to 15 digits are parsed in place; anything else
+    // (exponents, longer numbers, NaN) goes through Double.parseDouble
+    public double nextDouble() throws IOException {
+        readToken();
+        int i = 0;
+        boolean negative = token[0] == '-';
+        if (negative || token[0] == '+') {
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        for (; i < tokenLength; i++) {
+            byte b = token[i];
+            if (b == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else if (b >= '0' && b <= '9' && digits < MAX_EXACT_DIGITS) {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+            } else {
+                break;
+            }
+        }
+        if (i < tokenLength || digits == 0) {
+            return Double.parseDouble(tokenText());
+        }
+        double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+        return negative ? -value : value;
+    }
+
+    // Rest of the current line without the line break
+    public String nextLine() throws IOException {
+        if (!fill()) {
+            throw new EOFException("Unexpected end of input");
+        }
+        tokenLength = 0;
+        while (fill()) {
+            byte b = buffer[position++];
+            if (b == '\n') {
+                break;
+            }
+            if (tokenLength == token.length) {
+                token = Arrays.copyOf(token, tokenLength * 2);
+            }
+            token[tokenLength++] = b;
+        }
+        if (tokenLength > 0 && token[tokenLength - 1] == '\r') {
+            tokenLength--;
+        }
+        return tokenText();
+    }
+}
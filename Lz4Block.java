@@ -0,0 +1,173 @@
+import java.util.Arrays;
+
+// LZ4 block format compressor and decompressor (no frame, no checksums).
+//
+// A block is a run of sequences: a token byte (literal count in the high
+// nibble, match length - 4 in the low nibble, 15 meaning "more bytes follow"),
+// the literals, a 2-byte little-endian match offset back into the output, and
+// any extra match length bytes. The last sequence has literals only. The
+// compressor is the greedy single-probe variant: a hash table of 4-byte
+// sequences finds one candidate per position, and positions are skipped
+// faster the longer no match turns up, so incompressible data costs little.
+//
+// One instance reuses its hash table between calls; it is not thread-safe.
+public class Lz4Block {
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;  // the last 5 bytes are always literals
+    private static final int MATCH_FIND_LIMIT = 12; // no match may start in the last 12 bytes
+    private static final int MAX_OFFSET = 0xFFFF;
+    private static final int HASH_BITS = 14;
+    private static final int SKIP_STRENGTH = 6;
+
+    private final int[] table = new int[1 << HASH_BITS];
+
+    // Upper bound on the compressed size of `length` bytes
+    public static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    // Compresses src[0, length) into dst; returns the compressed length
+    public int compress(byte[] src, int length, byte[] dst) {
+        Arrays.fill(table, -1);
+        int out = 0;
+        int anchor = 0;
+        int position = 0;
+        int matchLimit = length - LAST_LITERALS;
+        int findLimit = length - MATCH_FIND_LIMIT;
+        int misses = 0;
+
+        while (position < findLimit) {
+            int sequence = readInt(src, position);
+            int hash = (sequence * -1640531535) >>> (32 - HASH_BITS);
+            int candidate = table[hash];
+            table[hash] = position;
+            if (candidate < 0 || position - candidate > MAX_OFFSET || readInt(src, candidate) != sequence) {
+                position += 1 + (misses++ >>> SKIP_STRENGTH);
+                continue;
+            }
+            misses = 0;
+            // Extend backwards over literals that also match
+            while (position > anchor && candidate > 0 && src[position - 1] == src[candidate - 1]) {
+                position--;
+                candidate--;
+            }
+            int matchLength = MIN_MATCH;
+            while (position + matchLength < matchLimit && src[candidate + matchLength] == src[position + matchLength]) {
+                matchLength++;
+            }
+            out = writeSequence(src, anchor, position - anchor, position - candidate, matchLength, dst, out);
+            position += matchLength;
+            anchor = position;
+            if (position - 2 < findLimit && position >= 2) {
+                table[(readInt(src, position - 2) * -1640531535) >>> (32 - HASH_BITS)] = position - 2;
+            }
+        }
+        return writeLastLiterals(src, anchor, length - anchor, dst, out);
+    }
+
+    private static int writeSequence(byte[] src, int literalStart, int literals, int offset, int matchLength, byte[] dst, int out) {
+        int token = out++;
+        int extraMatch = matchLength - MIN_MATCH;
+        dst[token] = (byte) ((Math.min(literals, 15) << 4) | Math.min(extraMatch, 15));
+        out = writeLength(literals, dst, out);
+        System.arraycopy(src, literalStart, dst, out, literals);
+        out += literals;
+        dst[out++] = (byte) offset;
+        dst[out++] = (byte) (offset >>> 8);
+        return writeLength(extraMatch, dst, out);
+    }
+
+    private static int writeLastLiterals(byte[] src, int literalStart, int literals, byte[] dst, int out) {
+        dst[out++] = (byte) (Math.min(literals, 15) << 4);
+        out = writeLength(literals, dst, out);
+        System.arraycopy(src, literalStart, dst, out, literals);
+        return out + literals;
+    }
+
+    // Bytes after the token for a length of 15 or more: 255s, then the remainder
+    private static int writeLength(int length, byte[] dst, int out) {
+        if (length < 15) {
+            return out;
+        }
+        int remaining = length - 15;
+        while (remaining >= 255) {
+            dst[out++] = (byte) 255;
+            remaining -= 255;
+        }
+        dst[out++] = (byte) remaining;
+        return out;
+    }
+
+    // Decompresses src[0, length) into dst, which must hold exactly rawLength bytes
+    public static void decompress(byte[] src, int length, byte[] dst, int rawLength) {
+        int in = 0;
+        int out = 0;
+        while (true) {
+            if (in >= length) {
+                throw new IllegalArgumentException("LZ4 block ends without final literals");
+            }
+            int token = src[in++] & 0xFF;
+            int literals = token >>> 4;
+            if (literals == 15) {
+                int b;
+                do {
+                    if (in >= length) {
+                        throw new IllegalArgumentException("LZ4 block ends inside a literal length");
+                    }
+                    b = src[in++] & 0xFF;
+                    literals += b;
+                } while (b == 255);
+            }
+            if (literals < 0 || in + literals > length || out + literals > rawLength) {
+                throw new IllegalArgumentException("LZ4 literals overrun the block");
+            }
+            System.arraycopy(src, in, dst, out, literals);
+            in += literals;
+            out += literals;
+            if (in == length) {
+                break; // last sequence has no match
+            }
+
+            if (in + 2 > length) {
+                throw new IllegalArgumentException("LZ4 block ends inside a match offset");
+            }
+            int offset = (src[in] & 0xFF) | (src[in + 1] & 0xFF) << 8;
+            in += 2;
+            int matchLength = token & 0x0F;
+            if (matchLength == 15) {
+                int b;
+                do {
+                    if (in >= length) {
+                        throw new IllegalArgumentException("LZ4 block ends inside a match length");
+                    }
+                    b = src[in++] & 0xFF;
+                    matchLength += b;
+                } while (b == 255);
+            }
+            matchLength += MIN_MATCH;
+            int from = out - offset;
+            if (offset == 0 || from < 0 || matchLength < 0 || out + matchLength > rawLength) {
+                throw new IllegalArgumentException("LZ4 match outside the block");
+            }
+            if (offset >= matchLength) {
+                System.arraycopy(dst, from, dst, out, matchLength);
+                out += matchLength;
+            } else {
+                // Overlapping match repeats the last `offset` bytes
+                for (int i = 0; i < matchLength; i++) {
+                    dst[out++] = dst[from + i];
+                }
+            }
+        }
+        if (out != rawLength) {
+            throw new IllegalArgumentException("LZ4 block decodes to " + out + " bytes, expected " + rawLength);
+        }
+    }
+
+    private static int readInt(byte[] bytes, int position) {
+        return (bytes[position] & 0xFF)
+            | (bytes[position + 1] & 0xFF) << 8
+            | (bytes[position + 2] & 0xFF) << 16
+            | (bytes[position + 3] & 0xFF) << 24;
+    }
+}
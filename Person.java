@@ -0,0 +1,33 @@
+// Person class to store individual details
+public class Person {
+    private int number;
+    private String name;
+    private double salary;
+    private String occupation;
+
+    // Constructor
+    public Person(int number, String name, double salary, String occupation) {
+        this.number = number;
+        this.name = name;
+        this.salary = salary;
+        this.occupation = occupation;
+    }
+
+    // Getter methods
+    public int getNumber() { return number; }
+    public String getName() { return name; }
+    public double getSalary() { return salary; }
+    public String getOccupation() { return occupation; }
+
+    // Method to display person details in a formatted way
+    public void displayDetails() {
+        System.out.println("\n=======================================");
+        System.out.println("        PERSON DETAILS - A" + number);
+        System.out.println("=======================================");
+        System.out.println("Number        : A" + number);
+        System.out.println("Name          : " + name);
+        System.out.println("Salary        : $" + String.format("%.2f", salary));
+        System.out.println("Occupation    : " + occupation);
+        System.out.println("=======================================");
+    }
+}
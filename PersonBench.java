@@ -0,0 +1,151 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+// Micro-benchmarks for the tut4/tut5 person data paths at several table sizes.
+// Each benchmark is warmed up, then timed over a few iterations; the report
+// gives throughput and bytes allocated per operation (measured per thread
+// through com.sun.management.ThreadMXBean, like JMH's -prof gc).
+//
+//     javac -encoding UTF-8 PersonBench.java
+//     java -Xmx4g PersonBench [sizes...]        (default: 1000 100000 10000000)
+public class PersonBench {
+    private static final int WARMUP_ITERATIONS = 2;
+    private static final int MEASURED_ITERATIONS = 3;
+    private static final int LOOKUPS_PER_ITERATION = 1_000_000;
+    private static final int FORMATS_PER_ITERATION = 100_000;
+    private static final int MAX_REFRESH_ROWS = 1_000_000;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final String[] OCCUPATIONS = {"Engineer", "Teacher", "Doctor", "Nurse", "Accountant", "Chef", "Driver", "Artist"};
+
+    private static long sink; // keeps results alive so the JIT cannot drop the work
+
+    // One benchmark iteration; returns the number of operations it performed
+    private interface Iteration {
+        long run();
+    }
+
+    public static void main(String[] args) {
+        int[] sizes = args.length == 0 ? new int[] {1_000, 100_000, 10_000_000} : new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            sizes[i] = Integer.parseInt(args[i]);
+        }
+        System.out.printf("%-22s %10s %16s %12s%n", "Benchmark", "Records", "ops/s", "B/op");
+        for (int size : sizes) {
+            run(size);
+        }
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    private static void run(int size) {
+        PersonGUI[] people = new PersonGUI[size];
+        Random random = new Random(size);
+        for (int i = 0; i < size; i++) {
+            people[i] = new PersonGUI(i * 7 + 1, "Person " + i, 20_000 + random.nextInt(180_000), OCCUPATIONS[i % OCCUPATIONS.length]);
+        }
+        PersonStore store = new PersonStore();
+        for (PersonGUI person : people) {
+            store.add(person);
+        }
+        int[] probes = new int[LOOKUPS_PER_ITERATION];
+        for (int i = 0; i < probes.length; i++) {
+            probes[i] = people[random.nextInt(size)].getNumber();
+        }
+
+        measure("insert (tut5 store)", size, () -> {
+            PersonStore fresh = new PersonStore();
+            for (PersonGUI person : people) {
+                fresh.add(person);
+            }
+            sink += fresh.size();
+            return size;
+        });
+
+        measure("insert (tut4 columns)", size, () -> {
+            PersonColumns columns = new PersonColumns();
+            for (PersonGUI person : people) {
+                columns.add(person.getNumber(), person.getName(), person.getSalary(), person.getOccupation());
+            }
+            sink += columns.size();
+            return size;
+        });
+
+        measure("lookup by ID", size, () -> {
+            long found = 0;
+            for (int id : probes) {
+                found += store.rowOf(id);
+            }
+            sink += found;
+            return probes.length;
+        });
+
+        measure("duplicate check", size, () -> {
+            long rejected = 0;
+            for (int i = 0; i < probes.length; i++) {
+                if (!store.add(people[i % size])) {
+                    rejected++;
+                }
+            }
+            sink += rejected;
+            return probes.length;
+        });
+
+        PersonTableModel model = new PersonTableModel(store);
+        model.rowsAdded(0, size - 1);
+        int refreshRows = Math.min(size, MAX_REFRESH_ROWS);
+        measure("table refresh (rows)", size, () -> {
+            long chars = 0;
+            for (int row = 0; row < refreshRows; row++) {
+                for (int column = 0; column < model.getColumnCount(); column++) {
+                    chars += model.getValueAt(row, column).toString().length();
+                }
+            }
+            sink += chars;
+            return refreshRows;
+        });
+
+        measure("format searchPerson", size, () -> {
+            long chars = 0;
+            for (int i = 0; i < FORMATS_PER_ITERATION; i++) {
+                chars += tut5.formatDetails(store.get(i % size)).length();
+            }
+            sink += chars;
+            return FORMATS_PER_ITERATION;
+        });
+
+        PrintStream console = System.out;
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        measure("displayDetails (tut4)", size, () -> {
+            System.setOut(discard);
+            try {
+                for (int i = 0; i < FORMATS_PER_ITERATION; i++) {
+                    PersonGUI p = people[i % size];
+                    new Person(p.getNumber(), p.getName(), p.getSalary(), p.getOccupation()).displayDetails();
+                }
+            } finally {
+                System.setOut(console);
+            }
+            return FORMATS_PER_ITERATION;
+        });
+    }
+
+    private static void measure(String name, int size, Iteration iteration) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            iteration.run();
+        }
+        long operations = 0;
+        long allocatedBefore = THREADS.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            operations += iteration.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        System.out.printf("%-22s %10d %,16.0f %12.1f%n", name, size, operations * 1e9 / elapsed, (double) allocated / operations);
+    }
+}
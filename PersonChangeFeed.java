@@ -0,0 +1,245 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// In-process change feed for a PersonStore, built like the LMAX Disruptor: a
+// fixed ring of preallocated events that producers claim by sequence number
+// and that every subscriber reads in order on its own thread.
+//
+// Publishing has two steps so the store can number events under its append
+// lock (which keeps sequence order equal to row order) and do any waiting
+// outside it. claim() only hands out the next sequence. publish() waits until
+// every subscriber has finished with the slot's previous event, fills the slot
+// and marks it available. A slow subscriber therefore holds producers back
+// instead of letting a queue grow without bound.
+//
+// Subscribers see every event published after they subscribed, in sequence
+// order, in batches of whatever had been published when they woke up.
+public class PersonChangeFeed {
+    public static final int INSERT = 1;
+    public static final int CLEAR = 2;
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long PRODUCER_PARK_NANOS = 50_000;
+    private static final long SUBSCRIBER_PARK_NANOS = 1_000_000; // safety net; producers unpark sleepers
+    private static final VarHandle AVAILABLE = MethodHandles.arrayElementVarHandle(int[].class);
+
+    // One slot of the ring. Slots are reused, so subscribers must copy anything
+    // they want to keep after onEvent() returns.
+    public static final class Event {
+        private int type;
+        private int row;
+        private PersonGUI person;
+
+        public int type() { return type; }
+        // Row of an INSERT, or the number of rows removed by a CLEAR
+        public int row() { return row; }
+        // Person of an INSERT, null for a CLEAR
+        public PersonGUI person() { return person; }
+    }
+
+    public interface Subscriber {
+        // endOfBatch is true for the last event that was available when the batch started
+        void onEvent(Event event, long sequence, boolean endOfBatch);
+    }
+
+    // A subscriber's position in the feed and the thread that advances it
+    public final class Subscription implements AutoCloseable {
+        private final Subscriber subscriber;
+        private final AtomicLong sequence; // last event fully handled
+        private final int startRows;
+        private final Thread thread;
+        private volatile boolean running = true;
+        private volatile boolean sleeping;
+
+        private Subscription(String name, Subscriber subscriber, long start, int startRows) {
+            this.subscriber = subscriber;
+            this.sequence = new AtomicLong(start);
+            this.startRows = startRows;
+            this.thread = new Thread(this::run, "person-feed-" + name);
+            thread.setDaemon(true);
+        }
+
+        // Store rows that existed when the subscription started; events continue from there
+        public int startRows() { return startRows; }
+        public long sequence() { return sequence.get(); }
+
+        private void run() {
+            long next = sequence.get() + 1;
+            int idle = 0;
+            while (running) {
+                long available = highestPublished(next, claimed.get() - 1);
+                if (available < next) {
+                    idle = idle(idle);
+                    continue;
+                }
+                idle = 0;
+                for (long s = next; s <= available; s++) {
+                    try {
+                        subscriber.onEvent(ring[(int) s & mask], s, s == available);
+                    } catch (RuntimeException e) {
+                        // A failing subscriber must not stall the feed: report and move on
+                        System.err.println(thread.getName() + " failed on event " + s + ": " + e);
+                    }
+                }
+                sequence.set(available); // releases the slots to producers
+                next = available + 1;
+            }
+        }
+
+        // Spins, then yields, then parks until a producer wakes it
+        private int idle(int tries) {
+            if (tries < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else if (tries < SPIN_TRIES + YIELD_TRIES) {
+                Thread.yield();
+            } else {
+                sleeping = true;
+                // Re-check after announcing the sleep so a publish in between is not missed
+                if (highestPublished(sequence.get() + 1, claimed.get() - 1) <= sequence.get() && running) {
+                    LockSupport.parkNanos(this, SUBSCRIBER_PARK_NANOS);
+                }
+                sleeping = false;
+                return tries;
+            }
+            return tries + 1;
+        }
+
+        // Stops delivery; the subscription no longer holds producers back
+        @Override
+        public void close() {
+            running = false;
+            LockSupport.unpark(thread);
+            removeSubscription(this);
+        }
+    }
+
+    private final Event[] ring;
+    private final int mask;
+    private final int indexShift;
+    private final int[] available; // round in which each slot was last published
+    private final AtomicLong claimed = new AtomicLong(); // next sequence to hand out
+    private volatile long gatingCache = -1; // never above the slowest subscriber's sequence
+    private volatile Subscription[] subscriptions = new Subscription[0];
+
+    public PersonChangeFeed(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        ring = new Event[capacity];
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = new Event();
+        }
+        mask = capacity - 1;
+        indexShift = Integer.numberOfTrailingZeros(capacity);
+        available = new int[capacity];
+        Arrays.fill(available, -1);
+    }
+
+    public int capacity() { return ring.length; }
+
+    // Next sequence number; the caller must publish() it, or subscribers stop there
+    public long claim() {
+        return claimed.getAndIncrement();
+    }
+
+    // Fills and releases a claimed slot, waiting while the ring is full
+    public void publish(long sequence, int type, int row, PersonGUI person) {
+        long wrapPoint = sequence - ring.length;
+        if (wrapPoint > gatingCache) {
+            awaitCapacity(wrapPoint);
+        }
+        Event event = ring[(int) sequence & mask];
+        event.type = type;
+        event.row = row;
+        event.person = person;
+        // Volatile so that the sleeping checks below cannot be reordered before it
+        AVAILABLE.setVolatile(available, (int) sequence & mask, (int) (sequence >>> indexShift));
+        for (Subscription subscription : subscriptions) {
+            if (subscription.sleeping) {
+                LockSupport.unpark(subscription.thread);
+            }
+        }
+    }
+
+    // Back-pressure: waits until the slowest subscriber has handled wrapPoint
+    private void awaitCapacity(long wrapPoint) {
+        int tries = 0;
+        while (true) {
+            long minimum;
+            // Under the feed lock so that a concurrent subscribe() cannot be missed
+            // by a minimum that is then cached after it
+            synchronized (this) {
+                minimum = minimumSequence();
+                gatingCache = minimum;
+            }
+            if (wrapPoint <= minimum) {
+                return;
+            }
+            if (tries < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else if (tries < SPIN_TRIES + YIELD_TRIES) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(PRODUCER_PARK_NANOS);
+            }
+            tries++;
+        }
+    }
+
+    // Slowest subscriber's sequence; without subscribers nothing holds producers back
+    private long minimumSequence() {
+        long minimum = claimed.get() - 1;
+        for (Subscription subscription : subscriptions) {
+            minimum = Math.min(minimum, subscription.sequence.get());
+        }
+        return minimum;
+    }
+
+    // Last sequence in [lower, upper] up to which every event is published
+    private long highestPublished(long lower, long upper) {
+        for (long s = lower; s <= upper; s++) {
+            if ((int) AVAILABLE.getAcquire(available, (int) s & mask) != (int) (s >>> indexShift)) {
+                return s - 1;
+            }
+        }
+        return upper;
+    }
+
+    // Starts delivering events claimed from now on to the subscriber on a new thread.
+    // startRows is passed through for the subscriber (see Subscription.startRows()).
+    public synchronized Subscription subscribe(String name, Subscriber subscriber, int startRows) {
+        // Every sequence claimed before this point is at most start, so producers
+        // already past their capacity check never need to wait for this subscriber
+        Subscription subscription = new Subscription(name, subscriber, claimed.get() - 1, startRows);
+        Subscription[] grown = Arrays.copyOf(subscriptions, subscriptions.length + 1);
+        grown[grown.length - 1] = subscription;
+        subscriptions = grown;
+        subscription.thread.start();
+        return subscription;
+    }
+
+    private synchronized void removeSubscription(Subscription subscription) {
+        Subscription[] current = subscriptions;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == subscription) {
+                Subscription[] shrunk = new Subscription[current.length - 1];
+                System.arraycopy(current, 0, shrunk, 0, i);
+                System.arraycopy(current, i + 1, shrunk, i, current.length - i - 1);
+                subscriptions = shrunk;
+                return;
+            }
+        }
+    }
+
+    // Stops every subscription
+    public void close() {
+        for (Subscription subscription : subscriptions) {
+            subscription.close();
+        }
+    }
+}
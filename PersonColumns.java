@@ -0,0 +1,191 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Column-oriented person storage: one growable primitive array per field.
+// Occupations are dictionary-encoded as small int codes, so payroll
+// aggregates run as plain loops over int[]/double[] with no per-row objects.
+// Names are kept off-heap in a StringArena and referenced by int handle.
+public class PersonColumns implements PersonRecordFile.RowSource {
+    private int[] ids;
+    private double[] salaries;
+    private int[] nameHandles;
+    private final StringArena nameArena = new StringArena(false);
+    private int[] occupationCodes;
+    private int size;
+
+    // Occupation dictionary: code -> text and text -> code
+    private String[] occupations = new String[8];
+    private int occupationCount;
+    private final Map<String, Integer> occupationIndex = new HashMap<>();
+
+    // First row for each ID (built on demand)
+    private IntHashIndex byId;
+    private int indexedRows;
+
+    public PersonColumns() {
+        this(16);
+    }
+
+    public PersonColumns(int capacity) {
+        capacity = Math.max(capacity, 4);
+        ids = new int[capacity];
+        salaries = new double[capacity];
+        nameHandles = new int[capacity];
+        occupationCodes = new int[capacity];
+    }
+
+    public int size() { return size; }
+
+    public int id(int row) { return ids[check(row)]; }
+    public String name(int row) { return nameArena.get(nameHandles[check(row)]); }
+    public double salary(int row) { return salaries[check(row)]; }
+    public int occupationCode(int row) { return occupationCodes[check(row)]; }
+    public String occupation(int row) { return occupations[occupationCodes[check(row)]]; }
+
+    public int occupationCount() { return occupationCount; }
+    public String occupationName(int code) { return occupations[code]; }
+
+    private int check(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+        return row;
+    }
+
+    // Appends a row and returns its index
+    public int add(int id, String name, double salary, String occupation) {
+        if (size == ids.length) {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            salaries = Arrays.copyOf(salaries, capacity);
+            nameHandles = Arrays.copyOf(nameHandles, capacity);
+            occupationCodes = Arrays.copyOf(occupationCodes, capacity);
+        }
+        ids[size] = id;
+        nameHandles[size] = nameArena.add(name);
+        salaries[size] = salary;
+        occupationCodes[size] = encodeOccupation(occupation);
+        return size++;
+    }
+
+    // Drops every row and the occupation dictionary; capacity is kept
+    public void clear() {
+        nameArena.clear();
+        size = 0;
+        Arrays.fill(occupations, 0, occupationCount, null);
+        occupationCount = 0;
+        occupationIndex.clear();
+        byId = null;
+        indexedRows = 0;
+    }
+
+    // Code for an occupation, adding it to the dictionary if new
+    public int encodeOccupation(String occupation) {
+        Integer code = occupationIndex.get(occupation);
+        if (code != null) {
+            return code;
+        }
+        if (occupationCount == occupations.length) {
+            occupations = Arrays.copyOf(occupations, occupationCount * 2);
+        }
+        occupations[occupationCount] = occupation;
+        occupationIndex.put(occupation, occupationCount);
+        return occupationCount++;
+    }
+
+    // Code for an occupation, or -1 if no row has it
+    public int occupationCodeOf(String occupation) {
+        Integer code = occupationIndex.get(occupation);
+        return code == null ? -1 : code;
+    }
+
+    // First row with this ID, or -1
+    public int rowOf(int id) {
+        if (byId == null) {
+            byId = new IntHashIndex(size);
+        }
+        for (; indexedRows < size; indexedRows++) {
+            byId.putIfAbsent(ids[indexedRows], indexedRows);
+        }
+        return byId.get(id);
+    }
+
+    public double totalSalary() {
+        double total = 0;
+        for (int i = 0; i < size; i++) {
+            total += salaries[i];
+        }
+        return total;
+    }
+
+    public double averageSalary() {
+        return size == 0 ? 0 : totalSalary() / size;
+    }
+
+    // Head count per occupation code
+    public int[] countByOccupation() {
+        int[] counts = new int[occupationCount];
+        for (int i = 0; i < size; i++) {
+            counts[occupationCodes[i]]++;
+        }
+        return counts;
+    }
+
+    // Salary total per occupation code
+    public double[] totalSalaryByOccupation() {
+        double[] totals = new double[occupationCount];
+        for (int i = 0; i < size; i++) {
+            totals[occupationCodes[i]] += salaries[i];
+        }
+        return totals;
+    }
+
+    // Salaries of one occupation (or of everyone for code -1), sorted ascending
+    public double[] sortedSalaries(int occupationCode) {
+        double[] selected;
+        if (occupationCode < 0) {
+            selected = Arrays.copyOf(salaries, size);
+        } else {
+            selected = new double[size];
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                if (occupationCodes[i] == occupationCode) {
+                    selected[n++] = salaries[i];
+                }
+            }
+            selected = Arrays.copyOf(selected, n);
+        }
+        Arrays.sort(selected);
+        return selected;
+    }
+
+    // Salaries grouped by occupation code in one counting-sort pass, each group sorted ascending
+    public double[][] sortedSalariesByOccupation() {
+        int[] counts = countByOccupation();
+        int[] offsets = new int[occupationCount + 1];
+        for (int code = 0; code < occupationCount; code++) {
+            offsets[code + 1] = offsets[code] + counts[code];
+        }
+        double[] grouped = new double[size];
+        int[] next = Arrays.copyOf(offsets, occupationCount);
+        for (int i = 0; i < size; i++) {
+            grouped[next[occupationCodes[i]]++] = salaries[i];
+        }
+        double[][] groups = new double[occupationCount][];
+        for (int code = 0; code < occupationCount; code++) {
+            groups[code] = Arrays.copyOfRange(grouped, offsets[code], offsets[code + 1]);
+            Arrays.sort(groups[code]);
+        }
+        return groups;
+    }
+
+    // Nearest-rank percentile (0-100) of an ascending array; NaN if empty
+    public static double percentile(double[] sorted, double percent) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+}
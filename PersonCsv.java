@@ -0,0 +1,231 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+// Streaming CSV reader/writer for person records: id,name,salary,occupation
+//
+// The reader works through a fixed-size char buffer and hands each record to
+// a sink as soon as it is parsed, so heap use does not depend on file size.
+// Fields may be quoted ("Smith, Jr.") with "" as an escaped quote. A header
+// line whose first field is not a number is skipped.
+public class PersonCsv {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_LINE_CHARS = 64 * 1024;
+    private static final int MAX_REPORTED_ERRORS = 10;
+
+    // Receives parsed records; return false to reject one (e.g. duplicate ID)
+    public interface Sink {
+        boolean accept(int id, String name, double salary, String occupation) throws IOException;
+    }
+
+    // Called every chunk of lines with the characters consumed so far
+    public interface Progress {
+        void update(long charsRead, long accepted, long rejected);
+    }
+
+    // Outcome of an import
+    public static class Result {
+        public long accepted;
+        public long rejected;
+        public final StringBuilder errors = new StringBuilder();
+        private int reportedErrors;
+
+        void reject(long line, String reason) {
+            rejected++;
+            if (reportedErrors < MAX_REPORTED_ERRORS) {
+                errors.append("Line ").append(line).append(": ").append(reason).append('\n');
+                reportedErrors++;
+            }
+        }
+    }
+
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private final StringBuilder field = new StringBuilder();
+    private final String[] fields = new String[4];
+    private int progressInterval = 4096;
+
+    public PersonCsv progressEvery(int lines) {
+        this.progressInterval = lines;
+        return this;
+    }
+
+    // Parses every line of the input; the reader is not closed
+    public Result read(Reader in, Sink sink, Progress progress) throws IOException {
+        Result result = new Result();
+        long charsRead = 0;
+        long line = 1;
+        int fieldCount = 0;
+        int lineChars = 0;
+        boolean inQuotes = false;
+        boolean quoteSeen = false; // previous char was a quote inside a quoted field
+        boolean overflow = false;
+
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            charsRead += n;
+            for (int i = 0; i < n; i++) {
+                char c = buffer[i];
+
+                if (inQuotes) {
+                    if (quoteSeen) {
+                        quoteSeen = false;
+                        if (c == '"') {
+                            overflow |= !appendQuoted(c, ++lineChars);
+                            continue;
+                        }
+                        inQuotes = false; // closing quote; fall through to handle c normally
+                    } else if (c == '"') {
+                        quoteSeen = true;
+                        continue;
+                    } else {
+                        overflow |= !appendQuoted(c, ++lineChars);
+                        continue;
+                    }
+                }
+
+                if (c == '\n') {
+                    if (overflow) {
+                        result.reject(line, "line longer than " + MAX_LINE_CHARS + " characters");
+                    } else if (fieldCount > 0 || field.length() > 0) {
+                        fieldCount = endField(fieldCount);
+                        handleRecord(fieldCount, line, sink, result);
+                    }
+                    field.setLength(0);
+                    fieldCount = 0;
+                    lineChars = 0;
+                    overflow = false;
+                    if (line++ % progressInterval == 0 && progress != null) {
+                        progress.update(charsRead, result.accepted, result.rejected);
+                    }
+                    continue;
+                }
+                if (overflow || ++lineChars > MAX_LINE_CHARS) {
+                    overflow = true;
+                    continue;
+                }
+                if (c == ',') {
+                    fieldCount = endField(fieldCount);
+                } else if (c == '"' && field.length() == 0) {
+                    inQuotes = true;
+                } else if (c != '\r') {
+                    field.append(c);
+                }
+            }
+        }
+
+        // Last line without a trailing newline
+        if (quoteSeen) {
+            inQuotes = false;
+        }
+        if (inQuotes || overflow) {
+            result.reject(line, inQuotes ? "unterminated quoted field" : "line too long");
+        } else if (fieldCount > 0 || field.length() > 0) {
+            fieldCount = endField(fieldCount);
+            handleRecord(fieldCount, line, sink, result);
+        }
+        field.setLength(0);
+        if (progress != null) {
+            progress.update(charsRead, result.accepted, result.rejected);
+        }
+        return result;
+    }
+
+    // Quoted characters count toward the line length like any others; returns
+    // false (and drops the char) once the line is too long
+    private boolean appendQuoted(char c, int lineChars) {
+        if (lineChars > MAX_LINE_CHARS) {
+            return false;
+        }
+        field.append(c);
+        return true;
+    }
+
+    private int endField(int fieldCount) {
+        if (fieldCount < fields.length) {
+            fields[fieldCount] = field.toString().trim();
+        }
+        field.setLength(0);
+        return fieldCount + 1;
+    }
+
+    private void handleRecord(int fieldCount, long line, Sink sink, Result result) throws IOException {
+        if (fieldCount != 4) {
+            result.reject(line, "expected 4 fields but found " + fieldCount);
+            return;
+        }
+        String idText = fields[0].startsWith("A") ? fields[0].substring(1) : fields[0];
+        int id;
+        try {
+            id = Integer.parseInt(idText);
+        } catch (NumberFormatException e) {
+            if (line == 1) {
+                return; // header line
+            }
+            result.reject(line, "invalid ID '" + fields[0] + "'");
+            return;
+        }
+        double salary;
+        try {
+            salary = Double.parseDouble(fields[2]);
+        } catch (NumberFormatException e) {
+            result.reject(line, "invalid salary '" + fields[2] + "'");
+            return;
+        }
+        if (!Double.isFinite(salary)) {
+            result.reject(line, "invalid salary '" + fields[2] + "'");
+            return;
+        }
+        if (fields[1].isEmpty() || fields[3].isEmpty()) {
+            result.reject(line, "name and occupation are required");
+            return;
+        }
+        String problem = PersonStore.textProblem(fields[1], fields[3]);
+        if (problem != null) {
+            result.reject(line, problem);
+            return;
+        }
+        if (sink.accept(id, fields[1], salary, fields[3])) {
+            result.accepted++;
+        } else {
+            result.reject(line, "duplicate ID A" + id);
+        }
+    }
+
+    // Writes the header line
+    public static void writeHeader(Writer out) throws IOException {
+        out.write("id,name,salary,occupation\n");
+    }
+
+    // Writes one record; salary uses Double.toString so it reads back exactly
+    public static void writeRecord(Writer out, int id, String name, double salary, String occupation) throws IOException {
+        out.write(Integer.toString(id));
+        out.write(',');
+        writeField(out, name);
+        out.write(',');
+        out.write(Double.toString(salary));
+        out.write(',');
+        writeField(out, occupation);
+        out.write('\n');
+    }
+
+    private static void writeField(Writer out, String value) throws IOException {
+        boolean needsQuotes = false;
+        for (int i = 0; i < value.length() && !needsQuotes; i++) {
+            char c = value.charAt(i);
+            needsQuotes = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!needsQuotes) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.write('"');
+            }
+            out.write(c);
+        }
+        out.write('"');
+    }
+}
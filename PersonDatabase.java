@@ -0,0 +1,276 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+// Crash-safe person storage: a memory-mapped snapshot plus journal segments.
+//
+// people.dat         snapshot (PersonRecordFile), covers segments <= its journalSegment
+// people.dat.wal.N   journal segments with the changes made after that
+// people.dat.tmp     snapshot being written by a compaction
+// people.dat.lock    held (FileChannel lock) by the one process that has it open
+//
+// Every add/clear goes to the current segment. A compaction rotates to a new
+// segment, writes the rows as of the rotation into people.dat.tmp, renames it
+// over people.dat and deletes the segments it covers. If anything fails in
+// between, open() finishes or discards the compaction and replays whatever
+// segments the snapshot does not cover, so no change is lost once it is
+// durable: logAdd/logClear return a commit position and awaitDurable() waits
+// until the journal's group flush has forced it to disk (close() and sync()
+// force everything). Acknowledge a change only after that.
+//
+// Only one process may have the files open: two would append to the same
+// segment, and one's compaction would delete segments the other still writes.
+// open() fails if another process holds the lock file. A compaction that
+// fails is reported on stderr and thrown again by close(); the journal it was
+// meant to fold is kept, and the next compaction covers it too.
+public class PersonDatabase implements Closeable {
+    private static final String SEGMENT_SUFFIX = ".wal.";
+
+    // Lock files this process holds, since FileLock only excludes other processes
+    private static final Set<Path> LOCKED = ConcurrentHashMap.newKeySet();
+
+    private final Path snapshotPath;
+    private final FileChannel lockChannel; // holds the process lock until close()
+    private final PersonRecordFile snapshot;
+    private PersonJournal journal;
+    private long segment;
+    private long rotatedBytes; // journal bytes in segments closed by rotate(), for commit positions
+    private volatile Exception compactionFailure; // first failed compaction, thrown by close()
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "person-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private PersonDatabase(Path snapshotPath, FileChannel lockChannel, PersonRecordFile snapshot) {
+        this.snapshotPath = snapshotPath;
+        this.lockChannel = lockChannel;
+        this.snapshot = snapshot;
+    }
+
+    public static PersonDatabase open(String path) throws IOException {
+        return open(Paths.get(path));
+    }
+
+    // Locks the files, recovers an interrupted compaction and maps the snapshot;
+    // call replay() next
+    public static PersonDatabase open(Path path) throws IOException {
+        FileChannel lockChannel = lock(path);
+        try {
+            Path tmp = tmpPath(path);
+            if (Files.exists(tmp)) {
+                if (PersonRecordFile.isComplete(tmp)) {
+                    Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } else {
+                    Files.delete(tmp);
+                }
+            }
+            PersonDatabase database = new PersonDatabase(path, lockChannel, PersonRecordFile.open(path));
+            database.deleteSegmentsUpTo(database.snapshot.journalSegment());
+            return database;
+        } catch (IOException | RuntimeException e) {
+            unlock(lockChannel, path);
+            throw e;
+        }
+    }
+
+    private static FileChannel lock(Path path) throws IOException {
+        Path lockPath = path.toAbsolutePath().normalize().resolveSibling(path.getFileName() + ".lock");
+        // Checked before opening the file: on POSIX, closing any channel to it
+        // would drop the lock this process already holds
+        if (!LOCKED.add(lockPath)) {
+            throw new IOException(path + " is already open in this program");
+        }
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            if (channel.tryLock() == null) {
+                throw new IOException(path + " is already open in another program (close the other tut4/tut5 first)");
+            }
+            return channel;
+        } catch (IOException | RuntimeException e) {
+            if (channel != null) {
+                channel.close();
+            }
+            LOCKED.remove(lockPath);
+            throw e;
+        }
+    }
+
+    private static void unlock(FileChannel lockChannel, Path path) throws IOException {
+        try {
+            lockChannel.close(); // releases the lock
+        } finally {
+            LOCKED.remove(path.toAbsolutePath().normalize().resolveSibling(path.getFileName() + ".lock"));
+        }
+    }
+
+    // Rows as of the last compaction
+    public PersonRecordFile snapshot() { return snapshot; }
+
+    // Replays journal segments newer than the snapshot, then opens a fresh segment for appends
+    public long replay(PersonJournal.Listener listener) throws IOException {
+        long records = 0;
+        long last = snapshot.journalSegment();
+        for (long number : segments()) {
+            long replayed = PersonJournal.replay(segmentPath(number), listener);
+            if (replayed == 0) {
+                Files.deleteIfExists(segmentPath(number)); // nothing was logged that session
+            }
+            records += replayed;
+            last = Math.max(last, number);
+        }
+        segment = last + 1;
+        journal = PersonJournal.open(segmentPath(segment));
+        return records;
+    }
+
+    // Both return the change's commit position for awaitDurable()
+    public long logAdd(int id, String name, double salary, String occupation) {
+        return rotatedBytes + journal.logAdd(id, name, salary, occupation);
+    }
+
+    public long logClear() {
+        return rotatedBytes + journal.logClear();
+    }
+
+    // Blocks until the change at `position` is on disk. Closing a segment in
+    // rotate() flushes it, so positions before the current segment are durable.
+    public void awaitDurable(long position) throws IOException {
+        PersonJournal current;
+        long base;
+        synchronized (this) {
+            current = journal;
+            base = rotatedBytes;
+        }
+        if (position > base) {
+            current.awaitDurable(position - base);
+        }
+    }
+
+    // Changes logged to the current segment
+    public long journalRecords() {
+        return journal.recordCount();
+    }
+
+    // Starts a new segment; returns the number of the one just closed. The caller
+    // must hold off logging until this returns so the cut matches its row count.
+    public synchronized long rotate() throws IOException {
+        journal.close();
+        rotatedBytes += journal.appendedBytes();
+        long closed = segment;
+        segment++;
+        journal = PersonJournal.open(segmentPath(segment));
+        return closed;
+    }
+
+    // Writes `rows` rows as the new snapshot covering segments <= coveredSegment
+    public Future<?> compactInBackground(int rows, PersonRecordFile.RowSource source, long coveredSegment) {
+        return compactor.submit(() -> {
+            try {
+                compact(rows, source, coveredSegment);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Compacting " + snapshotPath + " failed, keeping the journal: " + e);
+                if (compactionFailure == null) {
+                    compactionFailure = e;
+                }
+                throw e;
+            }
+            return null;
+        });
+    }
+
+    // The first compaction that failed since open(), or null
+    public Exception compactionFailure() {
+        return compactionFailure;
+    }
+
+    private void compact(int rows, PersonRecordFile.RowSource source, long coveredSegment) throws IOException {
+        Path tmp = tmpPath(snapshotPath);
+        PersonRecordFile.write(tmp, rows, source, coveredSegment);
+        try {
+            Files.move(tmp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // e.g. the old snapshot is still mapped on Windows; open() installs tmp next time
+            return;
+        }
+        deleteSegmentsUpTo(coveredSegment);
+    }
+
+    private void deleteSegmentsUpTo(long coveredSegment) throws IOException {
+        for (long number : segments()) {
+            if (number <= coveredSegment) {
+                Files.deleteIfExists(segmentPath(number));
+            }
+        }
+    }
+
+    // Existing segment numbers in ascending order
+    private List<Long> segments() throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        Path dir = snapshotPath.toAbsolutePath().getParent();
+        String prefix = snapshotPath.getFileName() + SEGMENT_SUFFIX;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, prefix + "*")) {
+            for (Path file : files) {
+                try {
+                    numbers.add(Long.parseLong(file.getFileName().toString().substring(prefix.length())));
+                } catch (NumberFormatException e) {
+                    // not one of ours
+                }
+            }
+        }
+        Collections.sort(numbers);
+        return numbers;
+    }
+
+    private Path segmentPath(long number) {
+        return snapshotPath.resolveSibling(snapshotPath.getFileName() + SEGMENT_SUFFIX + number);
+    }
+
+    private static Path tmpPath(Path path) {
+        return path.resolveSibling(path.getFileName() + ".tmp");
+    }
+
+    // Blocks until every logged change is on disk
+    public void sync() throws IOException {
+        journal.sync();
+    }
+
+    // Waits for a running compaction, flushes the journal and unmaps the snapshot
+    @Override
+    public void close() throws IOException {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (journal != null) {
+                journal.close();
+            }
+            snapshot.close();
+        } finally {
+            unlock(lockChannel, snapshotPath);
+        }
+        Exception failure = compactionFailure;
+        if (failure != null) {
+            throw new IOException("Compacting " + snapshotPath + " failed (the journal was kept): " + failure.getMessage(), failure);
+        }
+    }
+}
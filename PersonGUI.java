@@ -0,0 +1,27 @@
+// Person record shared by tut5 and the person store classes. A person built
+// here keeps its text on the heap until a PersonStore accepts it; the store's
+// rows keep theirs off-heap (see PersonStore), so a rejected duplicate costs no
+// off-heap space.
+public class PersonGUI {
+    private final int number;
+    private final String name;
+    private final double salary;
+    private final String occupation;
+
+    public PersonGUI(int number, String name, double salary, String occupation) {
+        this.number = number;
+        this.name = name;
+        this.salary = salary;
+        this.occupation = occupation;
+    }
+
+    // For stored forms that override getName() and getOccupation()
+    PersonGUI(int number, double salary) {
+        this(number, null, salary, null);
+    }
+
+    public int getNumber() { return number; }
+    public String getName() { return name; }
+    public double getSalary() { return salary; }
+    public String getOccupation() { return occupation; }
+}
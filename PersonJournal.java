@@ -0,0 +1,335 @@
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+// Append-only journal (write-ahead log) of person adds and clears.
+//
+// Each record is [length:int][crc32:int][payload], payload = type byte plus
+// fields. Appends only copy into a memory buffer; a flusher thread writes and
+// fsyncs the buffer every FLUSH_INTERVAL_MS or as soon as FLUSH_BYTES are
+// pending, so one fsync covers a whole group of adds. Appends return the
+// journal offset just past their record, and awaitDurable(offset) waits for
+// the group flush that covers it, so a caller can acknowledge a change only
+// once it is on disk. While anyone is waiting the flusher skips the interval:
+// it writes at once, and the adds that arrive during that fsync form the next
+// group. Replay stops at the
+// first torn or corrupt record and truncates the file there.
+public class PersonJournal implements Closeable {
+    private static final long FLUSH_INTERVAL_MS = 5;
+    private static final int FLUSH_BYTES = 64 * 1024;
+    private static final int MAX_PENDING_BYTES = 8 * 1024 * 1024;
+    private static final int MAX_RECORD_BYTES = 1 << 20;
+
+    private static final byte ADD = 1;
+    private static final byte CLEAR = 2;
+
+    // Receives replayed changes
+    public interface Listener {
+        void added(int id, String name, double salary, String occupation);
+        void cleared();
+    }
+
+    private final FileChannel channel;
+    private final Thread flusher;
+    private final Object lock = new Object();
+    private ByteBuffer pending = ByteBuffer.allocate(FLUSH_BYTES * 2);
+    private ByteBuffer writing = ByteBuffer.allocate(FLUSH_BYTES * 2);
+    private final CRC32 crc = new CRC32();
+    private long appendedBytes;
+    private long durableBytes;
+    private long recordCount;
+    private int waiters; // threads in awaitDurable()
+    private boolean closed;
+    private IOException failure;
+
+    private PersonJournal(FileChannel channel) {
+        this.channel = channel;
+        this.flusher = new Thread(this::flushLoop, "person-journal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    // Opens a journal segment for appending (creating it if needed)
+    public static PersonJournal open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        return new PersonJournal(channel);
+    }
+
+    // Records appended since this journal was opened
+    public long recordCount() {
+        synchronized (lock) {
+            return recordCount;
+        }
+    }
+
+    // Bytes appended since this journal was opened (durable or not)
+    public long appendedBytes() {
+        synchronized (lock) {
+            return appendedBytes;
+        }
+    }
+
+    // Returns the offset just past the record, for awaitDurable()
+    public long logAdd(int id, String name, double salary, String occupation) {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        byte[] occupationBytes = occupation.getBytes(StandardCharsets.UTF_8);
+        int payload = 1 + 4 + 8 + 4 + nameBytes.length + 4 + occupationBytes.length;
+        synchronized (lock) {
+            ByteBuffer buffer = reserve(payload);
+            int start = buffer.position() + 8;
+            buffer.putInt(payload).putInt(0);
+            buffer.put(ADD).putInt(id).putDouble(salary);
+            buffer.putInt(nameBytes.length).put(nameBytes);
+            buffer.putInt(occupationBytes.length).put(occupationBytes);
+            finishRecord(buffer, start, payload);
+            return appendedBytes;
+        }
+    }
+
+    public long logClear() {
+        synchronized (lock) {
+            ByteBuffer buffer = reserve(1);
+            int start = buffer.position() + 8;
+            buffer.putInt(1).putInt(0).put(CLEAR);
+            finishRecord(buffer, start, 1);
+            return appendedBytes;
+        }
+    }
+
+    // Makes room for one record, waiting for the flusher if too much is pending
+    private ByteBuffer reserve(int payload) {
+        if (payload > MAX_RECORD_BYTES) {
+            throw new IllegalArgumentException("Journal record too large: " + payload + " bytes");
+        }
+        checkUsable();
+        while (pending.position() > MAX_PENDING_BYTES) {
+            awaitLock();
+            checkUsable();
+        }
+        if (pending.remaining() < payload + 8) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + payload + 8));
+            pending.flip();
+            grown.put(pending);
+            pending = grown;
+        }
+        return pending;
+    }
+
+    private void finishRecord(ByteBuffer buffer, int payloadStart, int payload) {
+        crc.reset();
+        crc.update(buffer.array(), payloadStart, payload);
+        buffer.putInt(payloadStart - 4, (int) crc.getValue());
+        appendedBytes += payload + 8;
+        recordCount++;
+        // Wake the flusher when a group starts, and again once it is big enough to write early
+        int length = buffer.position();
+        if (length == payload + 8 || (length >= FLUSH_BYTES && length - payload - 8 < FLUSH_BYTES)) {
+            lock.notifyAll();
+        }
+    }
+
+    private void checkUsable() {
+        if (failure != null) {
+            throw new UncheckedIOException("Journal write failed", failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("Journal is closed");
+        }
+    }
+
+    private void awaitLock() {
+        try {
+            lock.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new InterruptedIOException("Interrupted waiting for journal"));
+        }
+    }
+
+    // Blocks until everything appended so far is on disk
+    public void sync() throws IOException {
+        synchronized (lock) {
+            awaitDurable(appendedBytes);
+        }
+    }
+
+    // Blocks until the group flush covering `offset` (from logAdd or logClear) is on disk
+    public void awaitDurable(long offset) throws IOException {
+        synchronized (lock) {
+            waiters++;
+            try {
+                lock.notifyAll(); // the flusher stops waiting for more of the group
+                while (durableBytes < offset && failure == null) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted waiting for journal sync");
+                    }
+                }
+            } finally {
+                waiters--;
+            }
+            if (failure != null && durableBytes < offset) {
+                throw failure;
+            }
+        }
+    }
+
+    // Group commit: swap buffers under the lock, write and fsync outside it
+    private void flushLoop() {
+        while (true) {
+            long target;
+            synchronized (lock) {
+                try {
+                    while (pending.position() == 0 && !closed) {
+                        lock.wait();
+                    }
+                    if (pending.position() < FLUSH_BYTES && !closed && waiters == 0) {
+                        lock.wait(FLUSH_INTERVAL_MS); // let more adds join this group
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (pending.position() == 0 && closed) {
+                    return;
+                }
+                ByteBuffer full = pending;
+                pending = writing;
+                writing = full;
+                target = appendedBytes;
+                lock.notifyAll(); // wake appenders waiting for space
+            }
+
+            try {
+                writing.flip();
+                while (writing.hasRemaining()) {
+                    channel.write(writing);
+                }
+                writing.clear();
+                channel.force(false);
+                synchronized (lock) {
+                    durableBytes = target;
+                    lock.notifyAll();
+                }
+            } catch (IOException e) {
+                synchronized (lock) {
+                    failure = e;
+                    lock.notifyAll();
+                }
+                return;
+            }
+        }
+    }
+
+    // Flushes everything and stops the flusher
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // Replays a segment; returns the number of valid records. A torn tail is cut off.
+    public static long replay(Path path, Listener listener) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        long validBytes = 0;
+        long records = 0;
+        CRC32 crc = new CRC32();
+        try (InputStream file = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file, 64 * 1024))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length <= 0 || length > MAX_RECORD_BYTES) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                try {
+                    int expected = in.readInt();
+                    in.readFully(payload);
+                    crc.reset();
+                    crc.update(payload);
+                    if ((int) crc.getValue() != expected) {
+                        break;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+                if (!apply(ByteBuffer.wrap(payload), listener)) {
+                    break;
+                }
+                validBytes += length + 8;
+                records++;
+            }
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            if (channel.size() > validBytes) {
+                channel.truncate(validBytes);
+            }
+        }
+        return records;
+    }
+
+    private static boolean apply(ByteBuffer payload, Listener listener) {
+        int id;
+        double salary;
+        String name;
+        String occupation;
+        try {
+            byte type = payload.get();
+            if (type == CLEAR) {
+                listener.cleared();
+                return true;
+            }
+            if (type != ADD) {
+                return false;
+            }
+            id = payload.getInt();
+            salary = payload.getDouble();
+            byte[] nameBytes = new byte[payload.getInt()];
+            payload.get(nameBytes);
+            byte[] occupationBytes = new byte[payload.getInt()];
+            payload.get(occupationBytes);
+            name = new String(nameBytes, StandardCharsets.UTF_8);
+            occupation = new String(occupationBytes, StandardCharsets.UTF_8);
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            return false; // malformed payload
+        }
+        listener.added(id, name, salary, occupation);
+        return true;
+    }
+}
@@ -0,0 +1,232 @@
+import java.util.Arrays;
+import java.util.Locale;
+
+// Compact radix trie over lower-cased names, occupations and "a<number>" IDs,
+// used for type-ahead search. Nodes live in parallel int arrays and edge
+// labels in one shared char pool, so there is no object per node. Children
+// are kept in sorted order, so prefix matches come back alphabetically.
+//
+// Not thread-safe: tut5 confines it to its search thread.
+public class PersonPrefixTrie {
+    public static final int NAME = 0;
+    public static final int OCCUPATION = 1;
+    public static final int ID = 2;
+
+    private static final int NONE = -1;
+    private static final int ROOT = 0;
+
+    // Node arrays
+    private int[] labelStart;
+    private int[] labelLength;
+    private int[] firstChild;
+    private int[] nextSibling;
+    private int[] firstEntry;
+    private int nodeCount;
+
+    // Edge label characters
+    private char[] pool;
+    private int poolSize;
+
+    // Entries ending at a node: (row << 2 | kind), chained through entryNext
+    private int[] entryValue;
+    private int[] entryNext;
+    private int entryCount;
+
+    public PersonPrefixTrie() {
+        clear();
+    }
+
+    public void clear() {
+        labelStart = new int[1024];
+        labelLength = new int[1024];
+        firstChild = new int[1024];
+        nextSibling = new int[1024];
+        firstEntry = new int[1024];
+        pool = new char[4096];
+        entryValue = new int[1024];
+        entryNext = new int[1024];
+        poolSize = 0;
+        entryCount = 0;
+        nodeCount = 0;
+        newNode(0, 0); // root
+    }
+
+    // Kind of a value returned by search()
+    public static int kindOf(int match) { return match & 3; }
+    public static int rowOf(int match) { return match >>> 2; }
+
+    // Indexes the name, occupation and ID of one row
+    public void add(int row, int number, String name, String occupation) {
+        insert(normalize(name), row, NAME);
+        insert(normalize(occupation), row, OCCUPATION);
+        insert("a" + number, row, ID);
+    }
+
+    public static String normalize(String text) {
+        return text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private void insert(String key, int row, int kind) {
+        if (key.isEmpty()) {
+            return;
+        }
+        int node = ROOT;
+        int i = 0;
+        while (true) {
+            char c = key.charAt(i);
+            int previous = NONE;
+            int child = firstChild[node];
+            while (child != NONE && pool[labelStart[child]] < c) {
+                previous = child;
+                child = nextSibling[child];
+            }
+
+            if (child == NONE || pool[labelStart[child]] != c) {
+                // No edge starts with c: hang the rest of the key off a new leaf
+                int leaf = newNode(appendLabel(key, i), key.length() - i);
+                linkChild(node, previous, leaf, child);
+                addEntry(leaf, row, kind);
+                return;
+            }
+
+            int start = labelStart[child];
+            int length = labelLength[child];
+            int common = 1;
+            while (common < length && i + common < key.length() && pool[start + common] == key.charAt(i + common)) {
+                common++;
+            }
+
+            if (common < length) {
+                // Split the edge: node -> middle -> child
+                int middle = newNode(start, common);
+                linkChild(node, previous, middle, nextSibling[child]);
+                labelStart[child] = start + common;
+                labelLength[child] = length - common;
+                nextSibling[child] = NONE;
+                firstChild[middle] = child;
+                child = middle;
+            }
+
+            i += common;
+            if (i == key.length()) {
+                addEntry(child, row, kind);
+                return;
+            }
+            node = child;
+        }
+    }
+
+    // Makes `child` the successor of `previous` (or the first child) followed by `next`
+    private void linkChild(int parent, int previous, int child, int next) {
+        nextSibling[child] = next;
+        if (previous == NONE) {
+            firstChild[parent] = child;
+        } else {
+            nextSibling[previous] = child;
+        }
+    }
+
+    private int newNode(int start, int length) {
+        if (nodeCount == firstChild.length) {
+            int capacity = nodeCount * 2;
+            labelStart = Arrays.copyOf(labelStart, capacity);
+            labelLength = Arrays.copyOf(labelLength, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            firstEntry = Arrays.copyOf(firstEntry, capacity);
+        }
+        labelStart[nodeCount] = start;
+        labelLength[nodeCount] = length;
+        firstChild[nodeCount] = NONE;
+        nextSibling[nodeCount] = NONE;
+        firstEntry[nodeCount] = NONE;
+        return nodeCount++;
+    }
+
+    private int appendLabel(String key, int from) {
+        int length = key.length() - from;
+        if (poolSize + length > pool.length) {
+            pool = Arrays.copyOf(pool, Math.max(poolSize + length, pool.length * 2));
+        }
+        key.getChars(from, key.length(), pool, poolSize);
+        poolSize += length;
+        return poolSize - length;
+    }
+
+    private void addEntry(int node, int row, int kind) {
+        if (entryCount == entryValue.length) {
+            entryValue = Arrays.copyOf(entryValue, entryCount * 2);
+            entryNext = Arrays.copyOf(entryNext, entryCount * 2);
+        }
+        entryValue[entryCount] = row << 2 | kind;
+        entryNext[entryCount] = firstEntry[node];
+        firstEntry[node] = entryCount++;
+    }
+
+    // Up to `limit` matches for keys starting with the prefix, each a (row << 2 | kind)
+    // value; a row appears at most once even if several of its keys match
+    public int[] search(String prefix, int limit) {
+        prefix = normalize(prefix);
+        if (prefix.isEmpty() || limit <= 0) {
+            return new int[0];
+        }
+
+        // Walk down to the node whose path covers the prefix
+        int node = ROOT;
+        int i = 0;
+        while (i < prefix.length()) {
+            char c = prefix.charAt(i);
+            int child = firstChild[node];
+            while (child != NONE && pool[labelStart[child]] != c) {
+                child = nextSibling[child];
+            }
+            if (child == NONE) {
+                return new int[0];
+            }
+            int start = labelStart[child];
+            int length = labelLength[child];
+            for (int k = 0; k < length && i < prefix.length(); k++, i++) {
+                if (pool[start + k] != prefix.charAt(i)) {
+                    return new int[0];
+                }
+            }
+            node = child;
+        }
+
+        // Pre-order walk of the subtree, stopping after `limit` distinct rows
+        int[] matches = new int[limit];
+        int found = 0;
+        int[] stack = new int[64];
+        int depth = 0;
+        stack[depth++] = node;
+        while (depth > 0 && found < limit) {
+            int current = stack[--depth];
+            for (int e = firstEntry[current]; e != NONE && found < limit; e = entryNext[e]) {
+                if (!containsRow(matches, found, entryValue[e] >>> 2)) {
+                    matches[found++] = entryValue[e];
+                }
+            }
+            // Push children in reverse so the smallest label is visited first
+            int mark = depth;
+            for (int child = firstChild[current]; child != NONE; child = nextSibling[child]) {
+                if (depth == stack.length) {
+                    stack = Arrays.copyOf(stack, depth * 2);
+                }
+                stack[depth++] = child;
+            }
+            for (int a = mark, b = depth - 1; a < b; a++, b--) {
+                int t = stack[a]; stack[a] = stack[b]; stack[b] = t;
+            }
+        }
+        return Arrays.copyOf(matches, found);
+    }
+
+    private static boolean containsRow(int[] matches, int count, int row) {
+        for (int i = 0; i < count; i++) {
+            if (matches[i] >>> 2 == row) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
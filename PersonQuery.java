@@ -0,0 +1,183 @@
+import java.util.Locale;
+
+// Query over person records built from field conditions combined with and()/or().
+//
+// Leaves that a secondary index can answer (salary range, occupation) return
+// their rows from the index, so selective queries never scan the store.
+public abstract class PersonQuery {
+
+    // True if the person satisfies this query
+    public abstract boolean matches(PersonGUI person);
+
+    // Ascending rows answered from indexes, or null if a scan is needed
+    abstract int[] indexedRows(PersonQueryEngine engine);
+
+    public static PersonQuery salaryBetween(double min, double max) {
+        return new SalaryRange(min, max);
+    }
+
+    public static PersonQuery occupationIs(String occupation) {
+        return new OccupationEquals(occupation);
+    }
+
+    public static PersonQuery nameStartsWith(String prefix) {
+        return new NamePrefix(prefix);
+    }
+
+    public PersonQuery and(PersonQuery other) {
+        return new And(this, other);
+    }
+
+    public PersonQuery or(PersonQuery other) {
+        return new Or(this, other);
+    }
+
+    static class SalaryRange extends PersonQuery {
+        final double min;
+        final double max;
+
+        SalaryRange(double min, double max) {
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        public boolean matches(PersonGUI person) {
+            return person.getSalary() >= min && person.getSalary() <= max;
+        }
+
+        @Override
+        int[] indexedRows(PersonQueryEngine engine) {
+            return engine.salaryRows(min, max);
+        }
+
+        @Override
+        public String toString() {
+            return "salary between " + min + " and " + max;
+        }
+    }
+
+    // Case folding shared by the occupation scan and the occupation index, so
+    // both paths agree on letters like 'İ' or 'ß'
+    static String occupationKey(String occupation) {
+        return occupation.toLowerCase(Locale.ROOT);
+    }
+
+    // Case-insensitive occupation match
+    static class OccupationEquals extends PersonQuery {
+        final String occupation;
+        final String key;
+
+        OccupationEquals(String occupation) {
+            this.occupation = occupation.trim();
+            this.key = occupationKey(this.occupation);
+        }
+
+        @Override
+        public boolean matches(PersonGUI person) {
+            return occupationKey(person.getOccupation()).equals(key);
+        }
+
+        @Override
+        int[] indexedRows(PersonQueryEngine engine) {
+            return engine.occupationRows(key);
+        }
+
+        @Override
+        public String toString() {
+            return "occupation = " + occupation;
+        }
+    }
+
+    // Case-insensitive name prefix (no index, always scanned)
+    static class NamePrefix extends PersonQuery {
+        final String prefix;
+
+        NamePrefix(String prefix) {
+            this.prefix = prefix.trim();
+        }
+
+        @Override
+        public boolean matches(PersonGUI person) {
+            return person.getName().regionMatches(true, 0, prefix, 0, prefix.length());
+        }
+
+        @Override
+        int[] indexedRows(PersonQueryEngine engine) {
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return "name starts with " + prefix;
+        }
+    }
+
+    static class And extends PersonQuery {
+        final PersonQuery left;
+        final PersonQuery right;
+
+        And(PersonQuery left, PersonQuery right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean matches(PersonGUI person) {
+            return left.matches(person) && right.matches(person);
+        }
+
+        // One indexed side is enough: its rows are filtered by the other side
+        @Override
+        int[] indexedRows(PersonQueryEngine engine) {
+            int[] leftRows = left.indexedRows(engine);
+            int[] rightRows = right.indexedRows(engine);
+            if (leftRows != null && rightRows != null) {
+                return PersonQueryEngine.intersect(leftRows, rightRows);
+            }
+            if (leftRows != null) {
+                return engine.filter(leftRows, right);
+            }
+            if (rightRows != null) {
+                return engine.filter(rightRows, left);
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return "(" + left + " AND " + right + ")";
+        }
+    }
+
+    static class Or extends PersonQuery {
+        final PersonQuery left;
+        final PersonQuery right;
+
+        Or(PersonQuery left, PersonQuery right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean matches(PersonGUI person) {
+            return left.matches(person) || right.matches(person);
+        }
+
+        // Both sides must be indexed, otherwise the union needs a scan anyway
+        @Override
+        int[] indexedRows(PersonQueryEngine engine) {
+            int[] leftRows = left.indexedRows(engine);
+            if (leftRows == null) {
+                return null;
+            }
+            int[] rightRows = right.indexedRows(engine);
+            return rightRows == null ? null : PersonQueryEngine.union(leftRows, rightRows);
+        }
+
+        @Override
+        public String toString() {
+            return "(" + left + " OR " + right + ")";
+        }
+    }
+}
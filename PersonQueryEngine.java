@@ -0,0 +1,271 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Runs PersonQuery objects against a PersonStore.
+//
+// Secondary indexes (a sorted salary array and an occupation -> rows
+// dictionary) are caught up with the store before each query. New salaries go
+// into a small sorted delta that is folded into the main array only once it
+// passes DELTA_LIMIT, so a query after a few adds does not copy every salary.
+// Queries the indexes cannot answer are scanned in parallel with fork-join
+// over row ranges, outside the engine's lock.
+public class PersonQueryEngine {
+    private static final int SCAN_CHUNK = 16 * 1024;
+    private static final int DELTA_LIMIT = 4 * 1024;
+
+    private final PersonStore store;
+    private final ForkJoinPool pool;
+
+    // Indexes cover rows [0, indexedRows) of store generation `generation`
+    private int indexedRows;
+    private int generation;
+    private double[] sortedSalaries = new double[0];
+    private int[] sortedSalaryRows = new int[0];
+    private double[] deltaSalaries = new double[0]; // sorted, rows not yet merged above
+    private int[] deltaRows = new int[0];
+    private final Map<String, IntList> occupationRows = new HashMap<>();
+
+    public PersonQueryEngine(PersonStore store) {
+        this(store, ForkJoinPool.commonPool());
+    }
+
+    public PersonQueryEngine(PersonStore store, ForkJoinPool pool) {
+        this.store = store;
+        this.pool = pool;
+        this.generation = store.generation();
+    }
+
+    // Ascending store rows among the first `rows` rows that match the query
+    public int[] execute(PersonQuery query, int rows) {
+        int[] indexed;
+        synchronized (this) {
+            catchUp(rows);
+            indexed = query.indexedRows(this);
+        }
+        if (indexed != null) {
+            // The indexes may cover rows added after the caller read `rows`
+            int end = indexed.length;
+            while (end > 0 && indexed[end - 1] >= rows) {
+                end--;
+            }
+            return end == indexed.length ? indexed : Arrays.copyOf(indexed, end);
+        }
+        return pool.invoke(new ScanTask(query, null, 0, rows)).toArray();
+    }
+
+    // Rows matching the query among the given ascending candidate rows
+    int[] filter(int[] candidates, PersonQuery query) {
+        if (candidates.length < SCAN_CHUNK) {
+            return new ScanTask(query, candidates, 0, candidates.length).compute().toArray();
+        }
+        return pool.invoke(new ScanTask(query, candidates, 0, candidates.length)).toArray();
+    }
+
+    int[] salaryRows(double min, double max) {
+        int from = lowerBound(sortedSalaries, min);
+        int to = Math.max(from, upperBound(sortedSalaries, max));
+        int deltaFrom = lowerBound(deltaSalaries, min);
+        int deltaTo = Math.max(deltaFrom, upperBound(deltaSalaries, max));
+        int[] rows = new int[(to - from) + (deltaTo - deltaFrom)];
+        System.arraycopy(sortedSalaryRows, from, rows, 0, to - from);
+        System.arraycopy(deltaRows, deltaFrom, rows, to - from, deltaTo - deltaFrom);
+        Arrays.sort(rows);
+        return rows;
+    }
+
+    // Rows for an occupation key (see PersonQuery.occupationKey)
+    int[] occupationRows(String key) {
+        IntList rows = occupationRows.get(key);
+        return rows == null ? new int[0] : rows.toArray();
+    }
+
+    // Adds rows appended since the last query to the indexes
+    private void catchUp(int rows) {
+        if (store.generation() != generation) {
+            generation = store.generation();
+            indexedRows = 0;
+            sortedSalaries = new double[0];
+            sortedSalaryRows = new int[0];
+            deltaSalaries = new double[0];
+            deltaRows = new int[0];
+            occupationRows.clear();
+        }
+        if (rows <= indexedRows) {
+            return;
+        }
+
+        int added = rows - indexedRows;
+        double[] newSalaries = new double[added];
+        int[] newRows = new int[added];
+        for (int i = 0; i < added; i++) {
+            int row = indexedRows + i;
+            PersonGUI person = store.get(row);
+            newSalaries[i] = person.getSalary();
+            newRows[i] = row;
+            occupationRows.computeIfAbsent(PersonQuery.occupationKey(person.getOccupation()), k -> new IntList()).add(row);
+        }
+        sortByKey(newSalaries, newRows, 0, added - 1);
+        if (deltaSalaries.length + added <= DELTA_LIMIT) {
+            // O(delta + batch): the main array is left alone
+            double[] mergedSalaries = new double[deltaSalaries.length + added];
+            int[] mergedRows = new int[mergedSalaries.length];
+            merge(deltaSalaries, deltaRows, newSalaries, newRows, mergedSalaries, mergedRows);
+            deltaSalaries = mergedSalaries;
+            deltaRows = mergedRows;
+        } else {
+            // O(n) once per DELTA_LIMIT rows added
+            double[] batch = new double[deltaSalaries.length + added];
+            int[] batchRows = new int[batch.length];
+            merge(deltaSalaries, deltaRows, newSalaries, newRows, batch, batchRows);
+            double[] mergedSalaries = new double[sortedSalaries.length + batch.length];
+            int[] mergedRows = new int[mergedSalaries.length];
+            merge(sortedSalaries, sortedSalaryRows, batch, batchRows, mergedSalaries, mergedRows);
+            sortedSalaries = mergedSalaries;
+            sortedSalaryRows = mergedRows;
+            deltaSalaries = new double[0];
+            deltaRows = new int[0];
+        }
+        indexedRows = rows;
+    }
+
+    // Merges two sorted key arrays (with their rows) into out/outRows
+    private static void merge(double[] a, int[] aRows, double[] b, int[] bRows, double[] out, int[] outRows) {
+        int i = 0, j = 0, k = 0;
+        while (i < a.length && j < b.length) {
+            if (Double.compare(a[i], b[j]) <= 0) {
+                out[k] = a[i];
+                outRows[k++] = aRows[i++];
+            } else {
+                out[k] = b[j];
+                outRows[k++] = bRows[j++];
+            }
+        }
+        while (i < a.length) {
+            out[k] = a[i];
+            outRows[k++] = aRows[i++];
+        }
+        while (j < b.length) {
+            out[k] = b[j];
+            outRows[k++] = bRows[j++];
+        }
+    }
+
+    // Quicksort of keys[lo..hi] that moves values along with their keys
+    private static void sortByKey(double[] keys, int[] values, int lo, int hi) {
+        while (hi - lo > 16) {
+            double pivot = keys[(lo + hi) >>> 1];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (Double.compare(keys[i], pivot) < 0) i++;
+                while (Double.compare(keys[j], pivot) > 0) j--;
+                if (i <= j) {
+                    double k = keys[i]; keys[i] = keys[j]; keys[j] = k;
+                    int v = values[i]; values[i] = values[j]; values[j] = v;
+                    i++;
+                    j--;
+                }
+            }
+            // Recurse into the smaller half to bound stack depth
+            if (j - lo < hi - i) {
+                sortByKey(keys, values, lo, j);
+                lo = i;
+            } else {
+                sortByKey(keys, values, i, hi);
+                hi = j;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            double k = keys[i];
+            int v = values[i];
+            int j = i - 1;
+            while (j >= lo && Double.compare(keys[j], k) > 0) {
+                keys[j + 1] = keys[j];
+                values[j + 1] = values[j];
+                j--;
+            }
+            keys[j + 1] = k;
+            values[j + 1] = v;
+        }
+    }
+
+    // First index with a[i] >= key
+    private static int lowerBound(double[] a, double key) {
+        int lo = 0, hi = a.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] < key) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    // First index with a[i] > key
+    private static int upperBound(double[] a, double key) {
+        int lo = 0, hi = a.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] <= key) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    static int[] intersect(int[] a, int[] b) {
+        IntList out = new IntList(Math.min(a.length, b.length));
+        int i = 0, j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) i++;
+            else if (a[i] > b[j]) j++;
+            else { out.add(a[i]); i++; j++; }
+        }
+        return out.toArray();
+    }
+
+    static int[] union(int[] a, int[] b) {
+        IntList out = new IntList(a.length + b.length);
+        int i = 0, j = 0;
+        while (i < a.length || j < b.length) {
+            if (j == b.length || (i < a.length && a[i] < b[j])) out.add(a[i++]);
+            else if (i == a.length || b[j] < a[i]) out.add(b[j++]);
+            else { out.add(a[i]); i++; j++; }
+        }
+        return out.toArray();
+    }
+
+    // Matches a range of rows (or of candidate rows), splitting large ranges in half
+    private final class ScanTask extends RecursiveTask<IntList> {
+        private final PersonQuery query;
+        private final int[] candidates; // null to scan store rows directly
+        private final int from;
+        private final int to;
+
+        ScanTask(PersonQuery query, int[] candidates, int from, int to) {
+            this.query = query;
+            this.candidates = candidates;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected IntList compute() {
+            if (to - from <= SCAN_CHUNK) {
+                IntList matches = new IntList();
+                for (int i = from; i < to; i++) {
+                    int row = candidates == null ? i : candidates[i];
+                    if (query.matches(store.get(row))) {
+                        matches.add(row);
+                    }
+                }
+                return matches;
+            }
+            int mid = (from + to) >>> 1;
+            ScanTask left = new ScanTask(query, candidates, from, mid);
+            left.fork();
+            IntList right = new ScanTask(query, candidates, mid, to).compute();
+            IntList matches = left.join();
+            matches.addAll(right);
+            return matches;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Load generator for PersonQueryServer: opens idle connections, then runs
+// client threads that pipeline GET requests for random IDs in batches and
+// reports requests per second. Start tut5 first.
+//
+//     java PersonQueryLoad [port] [client threads] [seconds] [idle connections] [max ID]
+public class PersonQueryLoad {
+    private static final int BATCH = 64;
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : PersonQueryServer.DEFAULT_PORT;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        int idle = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+        int maxId = args.length > 4 ? Integer.parseInt(args[4]) : 1000;
+
+        List<Socket> idleSockets = new ArrayList<>();
+        for (int i = 0; i < idle; i++) {
+            idleSockets.add(new Socket(InetAddress.getLoopbackAddress(), port));
+        }
+        System.out.println("Opened " + idle + " idle connections");
+
+        AtomicLong requests = new AtomicLong();
+        AtomicLong found = new AtomicLong();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        List<Thread> clients = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread client = new Thread(() -> {
+                try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+                    socket.setTcpNoDelay(true);
+                    OutputStream out = socket.getOutputStream();
+                    BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                    StringBuilder batch = new StringBuilder();
+                    while (System.nanoTime() < deadline) {
+                        batch.setLength(0);
+                        for (int i = 0; i < BATCH; i++) {
+                            batch.append("GET ").append(ThreadLocalRandom.current().nextInt(maxId)).append('\n');
+                        }
+                        out.write(batch.toString().getBytes(StandardCharsets.UTF_8));
+                        out.flush();
+                        for (int i = 0; i < BATCH; i++) {
+                            String reply = in.readLine();
+                            if (reply == null) {
+                                throw new IOException("Server closed the connection");
+                            }
+                            if (reply.startsWith("PERSON ")) {
+                                found.incrementAndGet();
+                            }
+                        }
+                        requests.addAndGet(BATCH);
+                    }
+                } catch (IOException e) {
+                    System.err.println("Client failed: " + e.getMessage());
+                }
+            });
+            clients.add(client);
+            client.start();
+        }
+        for (Thread client : clients) {
+            client.join();
+        }
+        for (Socket socket : idleSockets) {
+            socket.close();
+        }
+
+        System.out.printf("%,d requests in %d s = %,.0f requests/s (%,d found)%n",
+            requests.get(), seconds, requests.get() / (double) seconds, found.get());
+    }
+}
@@ -0,0 +1,443 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Loopback-only query server for the person store, so other processes on the
+// same machine can read and add people while tut5 is running.
+//
+// One selector thread does the socket I/O for every connection; the requests
+// themselves run on a small worker pool, one batch per connection at a time,
+// so a heavy RANGE never holds up the other clients and replies keep their
+// order. Requests are UTF-8 lines and may be pipelined; fields inside a person
+// line are tab-separated:
+//
+//   GET <id>                      -> PERSON <id>\t<name>\t<salary>\t<occupation>  |  NONE
+//   RANGE <min> <max> [limit]     -> ROWS <sent> <matched>, then one person line per row
+//   ADD <id>\t<name>\t<salary>\t<occupation>  -> ADDED | DUPLICATE | ERROR <reason>
+//   BULK <n>, then n person lines -> BULK <added> <duplicates> <invalid>
+//   COUNT                         -> COUNT <people>
+//
+// An idle client costs its socket and selection key only: the read buffer is
+// shared, and unhandled input or unsent output are buffered per connection
+// only while they exist. A batch stops at OUTPUT_HIGH_WATER bytes of replies,
+// and a connection is not read from while a batch runs or its output is
+// unsent, so pipelining more requests than a client reads replies for leaves
+// them in the socket instead of in memory. Pending output per connection is
+// at most OUTPUT_HIGH_WATER plus one reply (MAX_RANGE_LIMIT rows).
+public class PersonQueryServer implements Closeable {
+    public static final int DEFAULT_PORT = 7878;
+
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+    private static final int MAX_LINE_BYTES = 64 * 1024;
+    private static final int DEFAULT_RANGE_LIMIT = 1000;
+    private static final int MAX_RANGE_LIMIT = 100_000;
+    private static final int OUTPUT_HIGH_WATER = 256 * 1024;
+    private static final int WORKERS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    private final PersonStore people;
+    private final PersonQueryEngine queryEngine;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_BYTES);
+    private final ExecutorService workers = Executors.newFixedThreadPool(WORKERS, r -> {
+        Thread thread = new Thread(r, "person-query-worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Queue<SelectionKey> finished = new ConcurrentLinkedQueue<>(); // batches done, to send
+    private Thread thread;
+    private volatile boolean closed;
+
+    // Per-connection state; both buffers are null while unused. While a batch
+    // runs its worker owns input, reply and the bulk counters (the key is not
+    // selected then); the hand-over through the executor and the finished queue
+    // orders the worker's writes with the selector thread's.
+    private static class Connection {
+        ByteBuffer input;  // unhandled bytes, ready to read
+        ByteBuffer output; // unsent replies, ready to write
+        byte[] reply;      // replies of the last batch, not yet queued
+        boolean closeAfterReply;
+        boolean unsynced; // the batch added people whose journal records may not be on disk yet
+        int bulkRemaining;
+        int bulkAdded;
+        int bulkDuplicates;
+        int bulkInvalid;
+    }
+
+    public PersonQueryServer(PersonStore people, PersonQueryEngine queryEngine, int port) throws IOException {
+        this.people = people;
+        this.queryEngine = queryEngine;
+        this.selector = Selector.open();
+        try {
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            selector.close();
+            throw e;
+        }
+    }
+
+    public int port() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    // Starts the selector thread (a daemon, so it never keeps the JVM alive)
+    public PersonQueryServer start() {
+        thread = new Thread(this::serve, "person-query-server");
+        thread.setDaemon(true);
+        thread.start();
+        return this;
+    }
+
+    private void serve() {
+        try {
+            while (!closed) {
+                selector.select();
+                SelectionKey done;
+                while ((done = finished.poll()) != null) {
+                    try {
+                        batchDone(done);
+                    } catch (IOException e) {
+                        closeConnection(done);
+                    }
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else if (key.isWritable()) {
+                            flush(key);
+                        } else if (key.isReadable()) {
+                            read(key);
+                        }
+                    } catch (IOException e) {
+                        closeConnection(key);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Query server stopped: " + e.getMessage());
+        } finally {
+            workers.shutdownNow();
+            for (SelectionKey key : selector.keys()) {
+                closeConnection(key);
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                // nothing left to release
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel client;
+        while ((client = serverChannel.accept()) != null) {
+            client.configureBlocking(false);
+            client.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            client.register(selector, SelectionKey.OP_READ, new Connection());
+        }
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        SocketChannel client = (SocketChannel) key.channel();
+        Connection connection = (Connection) key.attachment();
+        readBuffer.clear();
+        int n = client.read(readBuffer);
+        if (n < 0) {
+            closeConnection(key);
+            return;
+        }
+        readBuffer.flip();
+        if (connection.input == null) {
+            connection.input = ByteBuffer.allocate(Math.max(256, readBuffer.remaining())).put(readBuffer);
+        } else {
+            connection.input.compact();
+            connection.input = append(connection.input, readBuffer);
+        }
+        connection.input.flip();
+        resume(key, connection);
+    }
+
+    private static ByteBuffer append(ByteBuffer partial, ByteBuffer more) {
+        if (partial.remaining() < more.remaining()) {
+            ByteBuffer grown = ByteBuffer.allocate(partial.position() + more.remaining());
+            partial.flip();
+            grown.put(partial);
+            partial = grown;
+        }
+        return partial.put(more);
+    }
+
+    // With the output drained: hands buffered requests to a worker, or goes
+    // back to reading if there is no complete line yet
+    private void resume(SelectionKey key, Connection connection) throws IOException {
+        if (connection.closeAfterReply) {
+            closeConnection(key);
+        } else if (hasLine(connection.input) || (connection.input != null && connection.input.remaining() > MAX_LINE_BYTES)) {
+            key.interestOps(0);
+            workers.execute(() -> runBatch(key, connection));
+        } else {
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    private static boolean hasLine(ByteBuffer input) {
+        if (input != null) {
+            for (int i = input.position(); i < input.limit(); i++) {
+                if (input.get(i) == '\n') {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Worker side: handles complete lines until the replies reach the high
+    // water mark, then passes the connection back to the selector thread
+    private void runBatch(SelectionKey key, Connection connection) {
+        StringBuilder response = new StringBuilder();
+        ByteBuffer input = connection.input;
+        int lineStart = input.position();
+        for (int i = lineStart; i < input.limit() && response.length() < OUTPUT_HIGH_WATER; i++) {
+            if (input.get(i) == '\n') {
+                handleLine(connection, decode(input, lineStart, i), response);
+                lineStart = i + 1;
+            }
+        }
+        input.position(lineStart);
+        if (!input.hasRemaining()) {
+            connection.input = null;
+        } else if (input.remaining() > MAX_LINE_BYTES && !hasLine(input)) {
+            response.append("ERROR line too long\n");
+            connection.input = null;
+            connection.closeAfterReply = true;
+        }
+        if (connection.unsynced) {
+            // One journal flush for every add in the batch, before any ADDED goes out
+            connection.unsynced = false;
+            try {
+                people.sync();
+            } catch (UncheckedIOException e) {
+                response.setLength(0);
+                response.append("ERROR could not save: ").append(e.getMessage()).append('\n');
+                connection.input = null;
+                connection.closeAfterReply = true;
+            }
+        }
+        connection.reply = response.toString().getBytes(StandardCharsets.UTF_8);
+        finished.add(key);
+        selector.wakeup();
+    }
+
+    // Selector side: queues the batch's replies and carries on
+    private void batchDone(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        if (!key.isValid()) {
+            return;
+        }
+        byte[] bytes = connection.reply;
+        connection.reply = null;
+        if (bytes.length > 0) {
+            if (connection.output == null) {
+                connection.output = ByteBuffer.wrap(bytes);
+            } else {
+                ByteBuffer combined = ByteBuffer.allocate(connection.output.remaining() + bytes.length);
+                combined.put(connection.output).put(bytes).flip();
+                connection.output = combined;
+            }
+        }
+        flush(key);
+    }
+
+    private static String decode(ByteBuffer input, int start, int end) {
+        if (end > start && input.get(end - 1) == '\r') {
+            end--;
+        }
+        byte[] bytes = new byte[end - start];
+        input.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void handleLine(Connection connection, String line, StringBuilder response) {
+        if (connection.bulkRemaining > 0) {
+            switch (addPerson(connection, line)) {
+                case ADDED: connection.bulkAdded++; break;
+                case DUPLICATE: connection.bulkDuplicates++; break;
+                default: connection.bulkInvalid++; break;
+            }
+            if (--connection.bulkRemaining == 0) {
+                response.append("BULK ").append(connection.bulkAdded).append(' ')
+                    .append(connection.bulkDuplicates).append(' ').append(connection.bulkInvalid).append('\n');
+            }
+            return;
+        }
+
+        int space = line.indexOf(' ');
+        String command = space < 0 ? line : line.substring(0, space);
+        String argument = space < 0 ? "" : line.substring(space + 1);
+        try {
+            switch (command) {
+                case "GET":
+                    PersonGUI person = people.findById(Integer.parseInt(argument.trim()));
+                    if (person == null) {
+                        response.append("NONE\n");
+                    } else {
+                        appendPerson(response.append("PERSON "), person);
+                    }
+                    break;
+                case "RANGE":
+                    range(argument.trim().split("\\s+"), response);
+                    break;
+                case "ADD":
+                    AddResult result = addPerson(connection, argument);
+                    response.append(result == AddResult.INVALID ? "ERROR expected id, name, salary, occupation" : result.name()).append('\n');
+                    break;
+                case "BULK":
+                    int count = Integer.parseInt(argument.trim());
+                    if (count <= 0) {
+                        response.append("BULK 0 0 0\n");
+                    } else {
+                        connection.bulkRemaining = count;
+                        connection.bulkAdded = 0;
+                        connection.bulkDuplicates = 0;
+                        connection.bulkInvalid = 0;
+                    }
+                    break;
+                case "COUNT":
+                    response.append("COUNT ").append(people.size()).append('\n');
+                    break;
+                case "":
+                    break;
+                default:
+                    response.append("ERROR unknown command ").append(command).append('\n');
+            }
+        } catch (NumberFormatException e) {
+            response.append("ERROR invalid number in '").append(line).append("'\n");
+        } catch (RuntimeException e) {
+            response.append("ERROR ").append(e.getMessage()).append('\n');
+        }
+    }
+
+    private void range(String[] arguments, StringBuilder response) {
+        if (arguments.length < 2) {
+            response.append("ERROR usage: RANGE <min> <max> [limit]\n");
+            return;
+        }
+        double min = Double.parseDouble(arguments[0]);
+        double max = Double.parseDouble(arguments[1]);
+        int limit = arguments.length > 2 ? Integer.parseInt(arguments[2]) : DEFAULT_RANGE_LIMIT;
+        limit = Math.max(0, Math.min(limit, MAX_RANGE_LIMIT));
+
+        int[] rows = queryEngine.execute(PersonQuery.salaryBetween(min, max), people.size());
+        int sent = Math.min(limit, rows.length);
+        response.append("ROWS ").append(sent).append(' ').append(rows.length).append('\n');
+        for (int i = 0; i < sent; i++) {
+            appendPerson(response, people.get(rows[i]));
+        }
+    }
+
+    private enum AddResult { ADDED, DUPLICATE, INVALID }
+
+    private AddResult addPerson(Connection connection, String line) {
+        String[] fields = line.split("\t", -1);
+        if (fields.length != 4) {
+            return AddResult.INVALID;
+        }
+        try {
+            String name = fields[1].trim();
+            String occupation = fields[3].trim();
+            if (name.isEmpty() || occupation.isEmpty()) {
+                return AddResult.INVALID;
+            }
+            double salary = Double.parseDouble(fields[2].trim());
+            if (!Double.isFinite(salary)) {
+                return AddResult.INVALID;
+            }
+            PersonGUI person = new PersonGUI(Integer.parseInt(fields[0].trim()), name, salary, occupation);
+            if (!people.addUnsynced(person)) {
+                return AddResult.DUPLICATE;
+            }
+            connection.unsynced = true;
+            return AddResult.ADDED;
+        } catch (IllegalArgumentException e) { // includes NumberFormatException
+            return AddResult.INVALID;
+        }
+    }
+
+    private static void appendPerson(StringBuilder out, PersonGUI person) {
+        out.append(person.getNumber()).append('\t');
+        appendField(out, person.getName());
+        out.append('\t').append(person.getSalary()).append('\t');
+        appendField(out, person.getOccupation());
+        out.append('\n');
+    }
+
+    // Tabs and line breaks would break the framing, so they go out as spaces
+    private static void appendField(StringBuilder out, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            out.append(c == '\t' || c == '\n' || c == '\r' ? ' ' : c);
+        }
+    }
+
+    // Writes as much as the socket takes; once everything is out, moves on to
+    // the next requests
+    private void flush(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        if (connection.output != null) {
+            ((SocketChannel) key.channel()).write(connection.output);
+            if (connection.output.hasRemaining()) {
+                key.interestOps(SelectionKey.OP_WRITE); // stop reading until the client catches up
+                return;
+            }
+            connection.output = null;
+        }
+        resume(key, connection);
+    }
+
+    private static void closeConnection(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // already gone
+        }
+    }
+
+    // Closes every connection and stops the selector thread
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        selector.wakeup();
+        if (thread != null) {
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,239 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Memory-mapped snapshot of person records: fixed-width records plus a string heap.
+//
+// people.dat   header (32 bytes):  magic, version, count, reserved,
+//                                  heapOffset:long, journalSegment:long
+//              count x 24-byte records:
+//                  id:int, nameOffset:int, salary:double, occupationOffset:int,
+//                  nameLength:ushort, occupationLength:ushort
+//              string heap: UTF-8 bytes of every name and occupation
+//
+// Opening a snapshot only maps it; records are decoded when a row is read.
+// Snapshots are immutable: PersonDatabase writes a new one with write() and
+// keeps later changes in its journal. journalSegment is the last journal
+// segment whose changes are already included.
+public class PersonRecordFile implements Closeable {
+    public static final String DEFAULT_PATH = "people.dat";
+
+    private static final int MAGIC = 0x50524543; // "PREC"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 32;
+    private static final int RECORD_SIZE = 24;
+    private static final int MAX_STRING_BYTES = 0xFFFF;
+
+    // Header layout
+    private static final int MAGIC_POS = 0;
+    private static final int VERSION_POS = 4;
+    private static final int COUNT_POS = 8;
+    private static final int HEAP_OFFSET_POS = 16;
+    private static final int SEGMENT_POS = 24;
+
+    // Supplies rows to write()
+    public interface RowSource {
+        int id(int row);
+        String name(int row);
+        double salary(int row);
+        String occupation(int row);
+    }
+
+    private final FileChannel channel; // null for an empty snapshot
+    private final MappedByteBuffer records;
+    private final MappedByteBuffer heap;
+    private final int count;
+    private final long journalSegment;
+
+    private PersonRecordFile(FileChannel channel, MappedByteBuffer records, MappedByteBuffer heap, int count, long journalSegment) {
+        this.channel = channel;
+        this.records = records;
+        this.heap = heap;
+        this.count = count;
+        this.journalSegment = journalSegment;
+    }
+
+    // Snapshot with no rows that covers no journal segments
+    public static PersonRecordFile empty() {
+        return new PersonRecordFile(null, null, null, 0, 0);
+    }
+
+    // Maps an existing snapshot, or returns an empty one if the file does not exist
+    public static PersonRecordFile open(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return empty();
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = readHeader(channel);
+            if (header == null) {
+                throw new IOException("Not a complete person snapshot: " + path);
+            }
+            int count = header.getInt(COUNT_POS);
+            long heapOffset = header.getLong(HEAP_OFFSET_POS);
+            long recordBytes = (long) count * RECORD_SIZE;
+            long heapSize = channel.size() - heapOffset;
+            if (count < 0 || heapOffset != HEADER_SIZE + recordBytes || heapSize < 0) {
+                throw new IOException("Person snapshot is truncated or corrupt: " + path);
+            }
+            if (recordBytes > Integer.MAX_VALUE || heapSize > Integer.MAX_VALUE) {
+                throw new IOException("Person snapshot is too large to map: " + path);
+            }
+            MappedByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, recordBytes);
+            MappedByteBuffer heap = channel.map(FileChannel.MapMode.READ_ONLY, heapOffset, heapSize);
+            records.order(ByteOrder.LITTLE_ENDIAN);
+            return new PersonRecordFile(channel, records, heap, count, header.getLong(SEGMENT_POS));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // True if the file holds a fully written snapshot (the magic is written last)
+    public static boolean isComplete(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return readHeader(channel) != null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static ByteBuffer readHeader(FileChannel channel) throws IOException {
+        if (channel.size() < HEADER_SIZE) {
+            return null;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+            // keep reading until the header is full
+        }
+        if (header.getInt(MAGIC_POS) != MAGIC || header.getInt(VERSION_POS) != VERSION) {
+            return null;
+        }
+        return header;
+    }
+
+    // Writes `count` rows to a new snapshot file and forces it to disk
+    public static void write(Path path, int count, RowSource rows, long journalSegment) throws IOException {
+        long heapOffset = HEADER_SIZE + (long) count * RECORD_SIZE;
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer recordBuffer = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+            ByteBuffer heapBuffer = ByteBuffer.allocate(64 * 1024);
+            long recordPos = HEADER_SIZE;
+            long heapPos = heapOffset;
+            long heapSize = 0;
+
+            for (int row = 0; row < count; row++) {
+                byte[] name = encode(rows.name(row));
+                byte[] occupation = encode(rows.occupation(row));
+                if (heapSize + name.length + occupation.length > Integer.MAX_VALUE) {
+                    throw new IOException("Person string heap is full");
+                }
+
+                if (recordBuffer.remaining() < RECORD_SIZE) {
+                    recordPos += flush(channel, recordBuffer, recordPos);
+                }
+                recordBuffer.putInt(rows.id(row));
+                recordBuffer.putInt((int) heapSize);
+                recordBuffer.putDouble(rows.salary(row));
+                recordBuffer.putInt((int) heapSize + name.length);
+                recordBuffer.putShort((short) name.length);
+                recordBuffer.putShort((short) occupation.length);
+
+                heapPos += putBytes(channel, heapBuffer, heapPos, name);
+                heapPos += putBytes(channel, heapBuffer, heapPos, occupation);
+                heapSize += name.length + occupation.length;
+            }
+            flush(channel, recordBuffer, recordPos);
+            flush(channel, heapBuffer, heapPos - heapBuffer.position());
+            channel.force(true);
+
+            // Header last, so a crash mid-write leaves a file isComplete() rejects
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC_POS, MAGIC);
+            header.putInt(VERSION_POS, VERSION);
+            header.putInt(COUNT_POS, count);
+            header.putLong(HEAP_OFFSET_POS, heapOffset);
+            header.putLong(SEGMENT_POS, journalSegment);
+            flush(channel, header.position(HEADER_SIZE), 0);
+            channel.force(true);
+        }
+    }
+
+    private static byte[] encode(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException("Name and occupation are limited to " + MAX_STRING_BYTES + " bytes");
+        }
+        return bytes;
+    }
+
+    // Buffers bytes destined for `position`, flushing the buffer when full; returns bytes consumed
+    private static int putBytes(FileChannel channel, ByteBuffer buffer, long position, byte[] bytes) throws IOException {
+        if (buffer.remaining() < bytes.length) {
+            long bufferStart = position - buffer.position();
+            flush(channel, buffer, bufferStart);
+        }
+        if (bytes.length > buffer.capacity()) {
+            channel.write(ByteBuffer.wrap(bytes), position);
+        } else {
+            buffer.put(bytes);
+        }
+        return bytes.length;
+    }
+
+    // Writes the buffer's contents at `position`; returns the number of bytes written
+    private static int flush(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.flip();
+        int written = buffer.remaining();
+        long pos = position;
+        while (buffer.hasRemaining()) {
+            pos += channel.write(buffer, pos);
+        }
+        buffer.clear();
+        return written;
+    }
+
+    public int size() { return count; }
+    public long journalSegment() { return journalSegment; }
+
+    private int recordPos(int row) {
+        if (row < 0 || row >= count) {
+            throw new IndexOutOfBoundsException("Record " + row + " of " + count);
+        }
+        return row * RECORD_SIZE;
+    }
+
+    public int id(int row) { return records.getInt(recordPos(row)); }
+    public double salary(int row) { return records.getDouble(recordPos(row) + 8); }
+
+    public String name(int row) {
+        int pos = recordPos(row);
+        return readString(records.getInt(pos + 4), records.getShort(pos + 20) & 0xFFFF);
+    }
+
+    public String occupation(int row) {
+        int pos = recordPos(row);
+        return readString(records.getInt(pos + 16), records.getShort(pos + 22) & 0xFFFF);
+    }
+
+    private String readString(int offset, int length) {
+        byte[] bytes = new byte[length];
+        heap.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
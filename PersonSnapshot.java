@@ -0,0 +1,528 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+import java.util.zip.CRC32;
+
+// Compact columnar file for shipping person datasets between machines.
+//
+// *.psnap   header (8 bytes): magic, version
+//           blocks: rows are cut into groups of ROWS_PER_BLOCK, and each group
+//               stores one block per column, LZ4-compressed (or raw if that is
+//               smaller):
+//                 ID          zigzag varint of the delta from the previous ID
+//                 NAME        varint byte length + UTF-8
+//                 SALARY      zigzag varint of whole cents << 1, or 1 + 8 raw
+//                             bytes for values that are not exact cents
+//                 OCCUPATION  varint code into the dictionary
+//           dictionary block: varint count, then varint length + UTF-8 per occupation
+//           footer: rowsPerBlock:int, count:int, blockCount:int, then
+//               (offset:long, storedLength:int, rawLength:int, crc32:int) for
+//               each column of each block, then for the dictionary
+//           trailer (16 bytes): footerOffset:long, footerLength:int, magic
+//
+// The footer lets a reader decode a single column or a range of rows by
+// reading only the blocks involved. The header and trailer are written last,
+// so a partly written file is rejected by open().
+public class PersonSnapshot implements Closeable {
+    public static final String EXTENSION = "psnap";
+
+    public static final int ID = 0;
+    public static final int NAME = 1;
+    public static final int SALARY = 2;
+    public static final int OCCUPATION = 3;
+    private static final int COLUMNS = 4;
+
+    private static final int MAGIC = 0x50534E50; // "PSNP"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int TRAILER_SIZE = 16;
+    private static final int ENTRY_SIZE = 20;
+    private static final int ROWS_PER_BLOCK = 16_384;
+
+    // Receives decoded rows from read()
+    public interface RowVisitor {
+        void row(int row, int id, String name, double salary, String occupation);
+    }
+
+    private final FileChannel channel;
+    private final int count;
+    private final int rowsPerBlock;
+    private final long[] offsets;    // [block * COLUMNS + column]
+    private final int[] storedLengths;
+    private final int[] rawLengths;
+    private final int[] checksums;
+    private String[] dictionary; // occupation per code, decoded by open()
+
+    private PersonSnapshot(FileChannel channel, int count, int rowsPerBlock, long[] offsets,
+                           int[] storedLengths, int[] rawLengths, int[] checksums) {
+        this.channel = channel;
+        this.count = count;
+        this.rowsPerBlock = rowsPerBlock;
+        this.offsets = offsets;
+        this.storedLengths = storedLengths;
+        this.rawLengths = rawLengths;
+        this.checksums = checksums;
+    }
+
+    public int size() { return count; }
+    public int occupationCount() { return dictionary.length; }
+
+    // ---- Writing ----
+
+    // Writes `count` rows to a new snapshot; progress (if not null) gets the rows written after each block
+    public static void write(Path path, int count, PersonRecordFile.RowSource rows, IntConsumer progress) throws IOException {
+        int blockCount = (count + ROWS_PER_BLOCK - 1) / ROWS_PER_BLOCK;
+        int entries = blockCount * COLUMNS + 1;
+        ByteBuffer footer = ByteBuffer.allocate(12 + entries * ENTRY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        footer.putInt(ROWS_PER_BLOCK).putInt(count).putInt(blockCount);
+
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            BlockWriter writer = new BlockWriter(channel, HEADER_SIZE, footer);
+            Bytes[] columns = {new Bytes(), new Bytes(), new Bytes(), new Bytes()};
+            Map<String, Integer> codes = new HashMap<>();
+            Bytes dictionary = new Bytes();
+
+            for (int from = 0; from < count; from += ROWS_PER_BLOCK) {
+                int to = Math.min(count, from + ROWS_PER_BLOCK);
+                for (Bytes column : columns) {
+                    column.clear();
+                }
+                long previousId = 0;
+                for (int row = from; row < to; row++) {
+                    int id = rows.id(row);
+                    columns[ID].putSignedVarLong(id - previousId);
+                    previousId = id;
+                    columns[NAME].putString(rows.name(row));
+                    putSalary(columns[SALARY], rows.salary(row));
+                    String occupation = rows.occupation(row);
+                    Integer code = codes.get(occupation);
+                    if (code == null) {
+                        code = codes.size();
+                        codes.put(occupation, code);
+                        dictionary.putString(occupation);
+                    }
+                    columns[OCCUPATION].putVarLong(code);
+                }
+                for (Bytes column : columns) {
+                    writer.write(column);
+                }
+                if (progress != null) {
+                    progress.accept(to);
+                }
+            }
+            Bytes dictionaryBlock = new Bytes();
+            dictionaryBlock.putVarLong(codes.size());
+            dictionaryBlock.put(dictionary.bytes, 0, dictionary.length);
+            writer.write(dictionaryBlock);
+
+            long footerOffset = writer.position;
+            footer.flip();
+            writeFully(channel, footer, footerOffset);
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            trailer.putLong(footerOffset).putInt(footer.limit()).putInt(MAGIC).flip();
+            writeFully(channel, trailer, footerOffset + footer.limit());
+            channel.force(true);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            writeFully(channel, header, 0);
+            channel.force(true);
+        }
+    }
+
+    // Whole cents (what salaries nearly always are) as a small varint, anything else verbatim
+    private static void putSalary(Bytes out, double salary) {
+        long cents = Math.round(salary * 100);
+        if (Math.abs(cents) < 1L << 53 && cents / 100.0 == salary && Double.doubleToRawLongBits(salary) != Long.MIN_VALUE) {
+            out.putVarLong(zigzag(cents) << 1);
+        } else {
+            out.putVarLong(1);
+            out.putLong(Double.doubleToRawLongBits(salary));
+        }
+    }
+
+    // Compresses blocks and appends them to the file, recording each in the footer
+    private static final class BlockWriter {
+        private final FileChannel channel;
+        private final ByteBuffer footer;
+        private final Lz4Block lz4 = new Lz4Block();
+        private final CRC32 crc = new CRC32();
+        private byte[] compressed = new byte[0];
+        long position;
+
+        BlockWriter(FileChannel channel, long position, ByteBuffer footer) {
+            this.channel = channel;
+            this.position = position;
+            this.footer = footer;
+        }
+
+        void write(Bytes block) throws IOException {
+            int maxLength = Lz4Block.maxCompressedLength(block.length);
+            if (compressed.length < maxLength) {
+                compressed = new byte[maxLength];
+            }
+            int storedLength = lz4.compress(block.bytes, block.length, compressed);
+            ByteBuffer stored = ByteBuffer.wrap(compressed, 0, storedLength);
+            if (storedLength >= block.length) {
+                storedLength = block.length; // stored raw; readers see storedLength == rawLength
+                stored = ByteBuffer.wrap(block.bytes, 0, block.length);
+            }
+            crc.reset();
+            crc.update(block.bytes, 0, block.length);
+            footer.putLong(position).putInt(storedLength).putInt(block.length).putInt((int) crc.getValue());
+            writeFully(channel, stored, position);
+            position += storedLength;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    // ---- Reading ----
+
+    public static PersonSnapshot open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < HEADER_SIZE + TRAILER_SIZE) {
+                throw new IOException("Not a person snapshot: " + path);
+            }
+            ByteBuffer header = readFully(channel, 0, HEADER_SIZE);
+            ByteBuffer trailer = readFully(channel, size - TRAILER_SIZE, TRAILER_SIZE);
+            if (header.getInt(0) != MAGIC || trailer.getInt(12) != MAGIC) {
+                throw new IOException("Not a complete person snapshot: " + path);
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new IOException("Unsupported person snapshot version " + header.getInt(4) + ": " + path);
+            }
+            long footerOffset = trailer.getLong(0);
+            int footerLength = trailer.getInt(8);
+            if (footerOffset < HEADER_SIZE || footerOffset + footerLength + TRAILER_SIZE != size || footerLength < 12) {
+                throw new IOException("Person snapshot footer is corrupt: " + path);
+            }
+            ByteBuffer footer = readFully(channel, footerOffset, footerLength);
+            int rowsPerBlock = footer.getInt();
+            int count = footer.getInt();
+            int blockCount = footer.getInt();
+            int entries = blockCount * COLUMNS + 1;
+            if (rowsPerBlock <= 0 || count < 0 || blockCount != (count + rowsPerBlock - 1) / rowsPerBlock
+                    || footerLength != 12 + (long) entries * ENTRY_SIZE) {
+                throw new IOException("Person snapshot footer is corrupt: " + path);
+            }
+            long[] offsets = new long[entries];
+            int[] storedLengths = new int[entries];
+            int[] rawLengths = new int[entries];
+            int[] checksums = new int[entries];
+            for (int i = 0; i < entries; i++) {
+                offsets[i] = footer.getLong();
+                storedLengths[i] = footer.getInt();
+                rawLengths[i] = footer.getInt();
+                checksums[i] = footer.getInt();
+                if (offsets[i] < HEADER_SIZE || offsets[i] + storedLengths[i] > footerOffset
+                        || storedLengths[i] < 0 || rawLengths[i] < storedLengths[i]) {
+                    throw new IOException("Person snapshot footer is corrupt: " + path);
+                }
+            }
+
+            PersonSnapshot snapshot = new PersonSnapshot(channel, count, rowsPerBlock,
+                offsets, storedLengths, rawLengths, checksums);
+            Cursor in = new Cursor(snapshot.decode(entries - 1));
+            long codes = in.varLong();
+            if (codes < 0 || codes > rawLengths[entries - 1]) {
+                throw new IOException("Person snapshot dictionary is corrupt: " + path);
+            }
+            snapshot.dictionary = new String[(int) codes];
+            for (int i = 0; i < codes; i++) {
+                snapshot.dictionary[i] = in.string();
+            }
+            return snapshot;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Person snapshot is truncated");
+            }
+        }
+        return buffer.flip();
+    }
+
+    // Reads, decompresses and verifies one footer entry
+    private byte[] decode(int entry) throws IOException {
+        byte[] stored = readFully(channel, offsets[entry], storedLengths[entry]).array();
+        byte[] raw = stored;
+        if (storedLengths[entry] < rawLengths[entry]) {
+            raw = new byte[rawLengths[entry]];
+            try {
+                Lz4Block.decompress(stored, stored.length, raw, raw.length);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Person snapshot block " + entry + " is corrupt: " + e.getMessage());
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(raw, 0, raw.length);
+        if ((int) crc.getValue() != checksums[entry]) {
+            throw new IOException("Person snapshot block " + entry + " fails its checksum");
+        }
+        return raw;
+    }
+
+    // Cursor over one column of one block, positioned at the first row needed
+    private Cursor column(int block, int column, int skipRows) throws IOException {
+        Cursor in = new Cursor(decode(block * COLUMNS + column));
+        long id = 0;
+        for (int i = 0; i < skipRows; i++) {
+            id = in.skip(column, id);
+        }
+        in.previousId = id;
+        return in;
+    }
+
+    private void checkRange(int from, int to) {
+        if (from < 0 || to > count || from > to) {
+            throw new IndexOutOfBoundsException("Rows " + from + " to " + to + " of " + count);
+        }
+    }
+
+    public int[] ids(int from, int to) throws IOException {
+        checkRange(from, to);
+        int[] ids = new int[to - from];
+        for (int row = from; row < to; ) {
+            int block = row / rowsPerBlock;
+            int end = Math.min(to, (block + 1) * rowsPerBlock);
+            Cursor in = column(block, ID, row - block * rowsPerBlock);
+            for (; row < end; row++) {
+                ids[row - from] = in.id();
+            }
+        }
+        return ids;
+    }
+
+    public String[] names(int from, int to) throws IOException {
+        checkRange(from, to);
+        String[] names = new String[to - from];
+        for (int row = from; row < to; ) {
+            int block = row / rowsPerBlock;
+            int end = Math.min(to, (block + 1) * rowsPerBlock);
+            Cursor in = column(block, NAME, row - block * rowsPerBlock);
+            for (; row < end; row++) {
+                names[row - from] = in.string();
+            }
+        }
+        return names;
+    }
+
+    public double[] salaries(int from, int to) throws IOException {
+        checkRange(from, to);
+        double[] salaries = new double[to - from];
+        for (int row = from; row < to; ) {
+            int block = row / rowsPerBlock;
+            int end = Math.min(to, (block + 1) * rowsPerBlock);
+            Cursor in = column(block, SALARY, row - block * rowsPerBlock);
+            for (; row < end; row++) {
+                salaries[row - from] = in.salary();
+            }
+        }
+        return salaries;
+    }
+
+    // Occupations share one String per distinct value
+    public String[] occupations(int from, int to) throws IOException {
+        checkRange(from, to);
+        String[] occupations = new String[to - from];
+        for (int row = from; row < to; ) {
+            int block = row / rowsPerBlock;
+            int end = Math.min(to, (block + 1) * rowsPerBlock);
+            Cursor in = column(block, OCCUPATION, row - block * rowsPerBlock);
+            for (; row < end; row++) {
+                occupations[row - from] = occupation(in);
+            }
+        }
+        return occupations;
+    }
+
+    // Decodes rows [from, to) block by block and hands each to the visitor
+    public void read(int from, int to, RowVisitor visitor) throws IOException {
+        checkRange(from, to);
+        for (int row = from; row < to; ) {
+            int block = row / rowsPerBlock;
+            int end = Math.min(to, (block + 1) * rowsPerBlock);
+            int skip = row - block * rowsPerBlock;
+            Cursor ids = column(block, ID, skip);
+            Cursor names = column(block, NAME, skip);
+            Cursor salaries = column(block, SALARY, skip);
+            Cursor occupations = column(block, OCCUPATION, skip);
+            for (; row < end; row++) {
+                visitor.row(row, ids.id(), names.string(), salaries.salary(), occupation(occupations));
+            }
+        }
+    }
+
+    private String occupation(Cursor in) throws IOException {
+        long code = in.varLong();
+        if (code < 0 || code >= dictionary.length) {
+            throw new IOException("Person snapshot has an unknown occupation code " + code);
+        }
+        return dictionary[(int) code];
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // ---- Encoding helpers ----
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // Growable byte array for building one block
+    private static final class Bytes {
+        byte[] bytes = new byte[64 * 1024];
+        int length;
+
+        void clear() {
+            length = 0;
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+            }
+        }
+
+        void putVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[length++] = (byte) (value | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+        }
+
+        void putSignedVarLong(long value) {
+            putVarLong(zigzag(value));
+        }
+
+        void putLong(long value) {
+            ensure(8);
+            for (int i = 0; i < 8; i++) {
+                bytes[length++] = (byte) (value >>> (8 * i));
+            }
+        }
+
+        void put(byte[] source, int offset, int count) {
+            ensure(count);
+            System.arraycopy(source, offset, bytes, length, count);
+            length += count;
+        }
+
+        void putString(String text) {
+            byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+            putVarLong(utf8.length);
+            put(utf8, 0, utf8.length);
+        }
+    }
+
+    // Reads varints and strings back out of a decoded block
+    private static final class Cursor {
+        private final byte[] bytes;
+        private int position;
+        long previousId;
+
+        Cursor(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        long varLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position >= bytes.length) {
+                    throw new IOException("Person snapshot block ends mid-value");
+                }
+                byte b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Person snapshot has an over-long varint");
+        }
+
+        int id() throws IOException {
+            previousId += unzigzag(varLong());
+            return (int) previousId;
+        }
+
+        String string() throws IOException {
+            int length = stringLength();
+            String text = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return text;
+        }
+
+        private int stringLength() throws IOException {
+            long length = varLong();
+            if (length < 0 || length > bytes.length - position) {
+                throw new IOException("Person snapshot string runs past its block");
+            }
+            return (int) length;
+        }
+
+        double salary() throws IOException {
+            long value = varLong();
+            if ((value & 1) == 0) {
+                return unzigzag(value >>> 1) / 100.0;
+            }
+            if (position + 8 > bytes.length) {
+                throw new IOException("Person snapshot block ends mid-value");
+            }
+            long bits = 0;
+            for (int i = 0; i < 8; i++) {
+                bits |= (long) (bytes[position++] & 0xFF) << (8 * i);
+            }
+            return Double.longBitsToDouble(bits);
+        }
+
+        // Skips one value of the column; IDs are deltas, so the running ID is threaded through
+        long skip(int column, long id) throws IOException {
+            switch (column) {
+                case ID:
+                    return id + unzigzag(varLong());
+                case NAME:
+                    int length = stringLength(); // before touching position, which it advances
+                    position += length;
+                    return id;
+                case SALARY:
+                    salary();
+                    return id;
+                default:
+                    varLong();
+                    return id;
+            }
+        }
+    }
+}
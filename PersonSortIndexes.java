@@ -0,0 +1,92 @@
+// One maintained SortedRowIndex per table column, built the first time the
+// column is sorted and then kept up to date as rows are added, so switching
+// the sort column or paging through sorted rows never re-sorts the table.
+//
+// Confined to the EDT, except build(), which only reads the store.
+public class PersonSortIndexes {
+    public static final int ID = 0;
+    public static final int NAME = 1;
+    public static final int SALARY = 2;
+    public static final int OCCUPATION = 3;
+
+    private final PersonStore store;
+    private final SortedRowIndex[] indexes = new SortedRowIndex[4];
+
+    public PersonSortIndexes(PersonStore store) {
+        this.store = store;
+    }
+
+    // Index for a column, or null if it has not been built yet
+    public SortedRowIndex get(int column) {
+        return indexes[column];
+    }
+
+    // Order used for a column; names and occupations ignore case
+    public static SortedRowIndex.RowComparator comparator(PersonStore store, int column) {
+        switch (column) {
+            case ID: return (a, b) -> Integer.compare(store.get(a).getNumber(), store.get(b).getNumber());
+            case NAME: return (a, b) -> String.CASE_INSENSITIVE_ORDER.compare(store.get(a).getName(), store.get(b).getName());
+            case SALARY: return (a, b) -> Double.compare(store.get(a).getSalary(), store.get(b).getSalary());
+            default: return (a, b) -> String.CASE_INSENSITIVE_ORDER.compare(store.get(a).getOccupation(), store.get(b).getOccupation());
+        }
+    }
+
+    // Sorts rows [0, rows) once, reading each key a single time; safe off the EDT
+    public SortedRowIndex build(int column, int rows) {
+        int[] order = new int[rows];
+        for (int row = 0; row < rows; row++) {
+            order[row] = row;
+        }
+        SortedRowIndex.RowComparator byKey;
+        if (column == ID) {
+            int[] ids = new int[rows];
+            for (int row = 0; row < rows; row++) {
+                ids[row] = store.get(row).getNumber();
+            }
+            byKey = (a, b) -> Integer.compare(ids[a], ids[b]);
+        } else if (column == SALARY) {
+            double[] salaries = new double[rows];
+            for (int row = 0; row < rows; row++) {
+                salaries[row] = store.get(row).getSalary();
+            }
+            byKey = (a, b) -> Double.compare(salaries[a], salaries[b]);
+        } else {
+            String[] texts = new String[rows];
+            for (int row = 0; row < rows; row++) {
+                PersonGUI person = store.get(row);
+                texts[row] = column == NAME ? person.getName() : person.getOccupation();
+            }
+            byKey = (a, b) -> String.CASE_INSENSITIVE_ORDER.compare(texts[a], texts[b]);
+        }
+        SortedRowIndex.sort(order, rows, byKey);
+        return SortedRowIndex.build(order, rows, comparator(store, column));
+    }
+
+    // Installs an index from build(), first adding the rows shown since it started
+    public void install(int column, SortedRowIndex index, int shownRows) {
+        for (int row = index.size(); row < shownRows; row++) {
+            index.insert(row);
+        }
+        indexes[column] = index;
+    }
+
+    // Call after store rows [from, to) are shown
+    public void rowsAdded(int from, int to) {
+        for (SortedRowIndex index : indexes) {
+            if (index != null) {
+                for (int row = from; row < to; row++) {
+                    index.insert(row);
+                }
+            }
+        }
+    }
+
+    // Call after the store is cleared; built indexes stay built (and empty)
+    public void cleared() {
+        for (SortedRowIndex index : indexes) {
+            if (index != null) {
+                index.clear();
+            }
+        }
+    }
+}
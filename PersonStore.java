@@ -0,0 +1,512 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.locks.StampedLock;
+
+// Thread-safe repository of people kept in insertion order with an ID -> row index.
+// When opened on a PersonDatabase, snapshot rows stay in the mapped file:
+// get() hands out a small view of such a row and never keeps it, so reading
+// every row once pins nothing on the heap. The ID index is built the first
+// time it is needed; every add and clear is written to the database journal,
+// which is compacted into a new snapshot in the background once it grows
+// large. add() and clear() return
+// only once their journal record is on disk (they join the journal's group
+// flush); bulk loaders use addUnsynced() and one sync() at the end.
+//
+// Concurrency: the ID index is split into stripes by ID hash, each behind its
+// own StampedLock, so lookups only share a read lock with other lookups and
+// adds of different IDs mostly take different locks. The one serial step of an
+// add is a short append section (journal record + row slot). Row reads take no
+// lock at all: rows never change once published, and the page table, row
+// count and snapshot rows are one immutable Table swapped by a single volatile
+// write, so a reader racing clear() sees the old rows or the new ones, never a
+// mix.
+//
+// Row text lives off-heap. An accepted person is copied into string arenas
+// that belong to the current generation (names as-is, occupations
+// deduplicated), and rows still in the snapshot read their text from the
+// mapped file. The arenas only grow until clear() drops them with the rest of
+// the Table; their memory goes once no row of that generation is referenced.
+//
+// Every add and clear is also published to a PersonChangeFeed, numbered under
+// the append lock so that event order is row order. The wait for ring space
+// happens after the locks are released, so a slow subscriber slows writers
+// down but never blocks lookups.
+public class PersonStore {
+    private static final int PAGE_SHIFT = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int COMPACT_AFTER_RECORDS = 50_000;
+
+    private static final int STRIPE_BITS = stripeBits();
+    private static final VarHandle PAGES = MethodHandles.arrayElementVarHandle(PersonGUI[][].class);
+    private static final VarHandle ROWS = MethodHandles.arrayElementVarHandle(PersonGUI[].class);
+
+    // One slice of the ID index
+    private static final class Stripe {
+        final StampedLock lock = new StampedLock();
+        IntHashIndex byId = new IntHashIndex();
+    }
+
+    // The rows as one published state: rows below size are in pages, except
+    // that rows below baseRows may still only be in snapshot. Pages and arenas
+    // are shared with the previous Table until the page table grows or the
+    // store is cleared.
+    private static final class Table {
+        final PersonGUI[][] pages;
+        final int size;
+        final int baseRows;
+        final PersonRecordFile snapshot;
+        final Arenas arenas;
+        final int generation; // bumped by clear() so derived indexes know to rebuild
+
+        Table(PersonGUI[][] pages, int size, int baseRows, PersonRecordFile snapshot, Arenas arenas, int generation) {
+            this.pages = pages;
+            this.size = size;
+            this.baseRows = baseRows;
+            this.snapshot = snapshot;
+            this.arenas = arenas;
+            this.generation = generation;
+        }
+
+        Table withPages(PersonGUI[][] pages, int size) {
+            return new Table(pages, size, baseRows, snapshot, arenas, generation);
+        }
+    }
+
+    // One generation's off-heap text
+    private static final class Arenas {
+        final StringArena names = new StringArena(false);
+        final StringArena occupations = new StringArena(true);
+    }
+
+    // An accepted person, with its text in the generation's arenas
+    private static final class StoredPerson extends PersonGUI {
+        private final Arenas arenas;
+        private final int nameHandle;
+        private final int occupationHandle;
+
+        StoredPerson(Arenas arenas, PersonGUI person) {
+            super(person.getNumber(), person.getSalary());
+            this.arenas = arenas;
+            this.nameHandle = arenas.names.add(person.getName());
+            this.occupationHandle = arenas.occupations.add(person.getOccupation());
+        }
+
+        @Override
+        public String getName() { return arenas.names.get(nameHandle); }
+
+        @Override
+        public String getOccupation() { return arenas.occupations.get(occupationHandle); }
+    }
+
+    // A snapshot row, decoded from the mapped file on each read
+    private static final class SnapshotPerson extends PersonGUI {
+        private final PersonRecordFile snapshot;
+        private final int row;
+
+        SnapshotPerson(PersonRecordFile snapshot, int row) {
+            super(snapshot.id(row), snapshot.salary(row));
+            this.snapshot = snapshot;
+            this.row = row;
+        }
+
+        @Override
+        public String getName() { return snapshot.name(row); }
+
+        @Override
+        public String getOccupation() { return snapshot.occupation(row); }
+    }
+
+    private final Stripe[] stripes = new Stripe[1 << STRIPE_BITS];
+    private final Object appendLock = new Object();
+    private volatile Table table;
+    private volatile boolean indexed; // false until rows loaded from disk are in the index
+    private final PersonDatabase database; // null for a purely in-memory store
+    private final PersonChangeFeed changes = new PersonChangeFeed(PersonChangeFeed.DEFAULT_CAPACITY);
+
+    public PersonStore() {
+        this(null);
+    }
+
+    private PersonStore(PersonDatabase database) {
+        this.database = database;
+        PersonRecordFile snapshot = database == null ? PersonRecordFile.empty() : database.snapshot();
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+        table = new Table(new PersonGUI[Math.max(16, (snapshot.size() + PAGE_MASK) >>> PAGE_SHIFT)][],
+            snapshot.size(), snapshot.size(), snapshot, new Arenas(), 0);
+    }
+
+    // Enough stripes that 4 writers per core rarely meet on the same lock
+    private static int stripeBits() {
+        int bits = 4;
+        while ((1 << bits) < Runtime.getRuntime().availableProcessors() * 4 && bits < 10) {
+            bits++;
+        }
+        return bits;
+    }
+
+    // Store backed by a snapshot plus journal: only the journal is read up front
+    public static PersonStore open(String path) throws IOException {
+        PersonDatabase database = PersonDatabase.open(path);
+        PersonStore store = new PersonStore(database);
+        long replayed;
+        try {
+            replayed = database.replay(new PersonJournal.Listener() {
+                @Override
+                public void added(int id, String name, double salary, String occupation) {
+                    // Older builds could journal text the arenas reject; skip it rather than fail to open
+                    String problem = textProblem(name, occupation);
+                    if (problem != null) {
+                        System.err.println("Skipping journalled person A" + id + ": " + problem);
+                        return;
+                    }
+                    store.append(new PersonGUI(id, name, salary, occupation));
+                }
+
+                @Override
+                public void cleared() {
+                    store.reset();
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            database.close();
+            throw e;
+        }
+        if (replayed > 0) {
+            store.compact(); // fold last session's journal into the snapshot
+        }
+        return store;
+    }
+
+    public int size() { return table.size; }
+    public boolean isEmpty() { return table.size == 0; }
+    public int generation() { return table.generation; }
+
+    // Person at the given row (rows keep insertion order)
+    public PersonGUI get(int row) {
+        return get(table, row);
+    }
+
+    // Person at the given row of that generation, or null if the store has
+    // been cleared since or the row is not there
+    public PersonGUI getInGeneration(int generation, int row) {
+        Table current = table;
+        if (current.generation != generation || row < 0 || row >= current.size) {
+            return null;
+        }
+        return get(current, row);
+    }
+
+    private static PersonGUI get(Table current, int row) {
+        if (row < 0 || row >= current.size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + current.size);
+        }
+        if (row < current.baseRows) {
+            return new SnapshotPerson(current.snapshot, row);
+        }
+        PersonGUI[] page = (PersonGUI[]) PAGES.getAcquire(current.pages, row >>> PAGE_SHIFT);
+        PersonGUI person = page == null ? null : (PersonGUI) ROWS.getAcquire(page, row & PAGE_MASK);
+        if (person == null) {
+            throw new IllegalStateException("Row " + row + " was published empty");
+        }
+        return person;
+    }
+
+    // The page at index, installing an empty one if no thread has yet
+    private static PersonGUI[] page(PersonGUI[][] table, int index) {
+        PersonGUI[] page = (PersonGUI[]) PAGES.getAcquire(table, index);
+        if (page == null) {
+            PersonGUI[] fresh = new PersonGUI[PAGE_SIZE];
+            page = (PersonGUI[]) PAGES.compareAndExchange(table, index, null, fresh);
+            if (page == null) {
+                page = fresh;
+            }
+        }
+        return page;
+    }
+
+    private Stripe stripeFor(int number) {
+        return stripes[(number * 0x9E3779B9) >>> (32 - STRIPE_BITS)];
+    }
+
+    // Why a person cannot be stored, or null if it can: names and occupations
+    // are limited to StringArena.MAX_BYTES of UTF-8 (as in the arenas, the
+    // journal's readers and the snapshot's 16-bit lengths)
+    public static String textProblem(String name, String occupation) {
+        if (!StringArena.fits(name)) {
+            return "name is longer than " + StringArena.MAX_BYTES + " UTF-8 bytes";
+        }
+        if (!StringArena.fits(occupation)) {
+            return "occupation is longer than " + StringArena.MAX_BYTES + " UTF-8 bytes";
+        }
+        return null;
+    }
+
+    // Adds the person unless the ID is already taken; returns false on duplicates.
+    // Returns once the add is durable. Throws IllegalArgumentException, before
+    // anything is journalled, if textProblem() rejects the person.
+    public boolean add(PersonGUI person) {
+        return add(person, true);
+    }
+
+    // Like add(), but returns before the journal record is on disk; call sync()
+    // before reporting a batch of these as saved
+    public boolean addUnsynced(PersonGUI person) {
+        return add(person, false);
+    }
+
+    private boolean add(PersonGUI person, boolean durable) {
+        String problem = textProblem(person.getName(), person.getOccupation());
+        if (problem != null) {
+            throw new IllegalArgumentException("Person A" + person.getNumber() + ": " + problem);
+        }
+        ensureIndexed();
+        int number = person.getNumber();
+        Stripe stripe = stripeFor(number);
+        int row;
+        PersonGUI stored;
+        long sequence;
+        long commit = 0;
+        long stamp = stripe.lock.writeLock();
+        try {
+            if (stripe.byId.containsKey(number)) {
+                return false;
+            }
+            synchronized (appendLock) {
+                if (database != null) {
+                    commit = database.logAdd(number, person.getName(), person.getSalary(), person.getOccupation());
+                }
+                row = table.size;
+                stored = append(person);
+                sequence = changes.claim();
+            }
+            stripe.byId.putIfAbsent(number, row);
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+        changes.publish(sequence, PersonChangeFeed.INSERT, row, stored);
+        if (durable) {
+            awaitDurable(commit); // outside the locks, so other adds join the same flush
+        }
+        compactIfNeeded();
+        return true;
+    }
+
+    private void awaitDurable(long commit) {
+        if (database != null) {
+            try {
+                database.awaitDurable(commit);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    // Blocks until every add and clear so far is on disk
+    public void sync() {
+        if (database != null) {
+            try {
+                database.sync();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    // Stores a copy of the person as the next row without logging or indexing
+    // it, and returns the copy; caller holds appendLock (or is replaying)
+    private PersonGUI append(PersonGUI person) {
+        Table current = table;
+        int row = current.size;
+        PersonGUI[][] pages = current.pages;
+        int index = row >>> PAGE_SHIFT;
+        if (index == pages.length) {
+            PersonGUI[][] grown = new PersonGUI[pages.length * 2][];
+            for (int i = 0; i < pages.length; i++) {
+                grown[i] = (PersonGUI[]) PAGES.getAcquire(pages, i);
+            }
+            pages = grown;
+        }
+        PersonGUI stored = new StoredPerson(current.arenas, person);
+        page(pages, index)[row & PAGE_MASK] = stored;
+        table = current.withPages(pages, row + 1); // the volatile write publishes the row
+        return stored;
+    }
+
+    // Indexes rows that were loaded from the snapshot or journal, once
+    private void ensureIndexed() {
+        if (indexed) {
+            return;
+        }
+        long[] stamps = lockAll();
+        try {
+            if (!indexed) {
+                Table current = table;
+                int rows = current.size;
+                for (Stripe stripe : stripes) {
+                    stripe.byId = new IntHashIndex(rows >>> STRIPE_BITS);
+                }
+                for (int row = 0; row < rows; row++) {
+                    int number = row < current.baseRows ? current.snapshot.id(row) : get(current, row).getNumber();
+                    stripeFor(number).byId.putIfAbsent(number, row);
+                }
+                indexed = true;
+            }
+        } finally {
+            unlockAll(stamps);
+        }
+    }
+
+    // Write-locks every stripe in order; used for whole-index changes
+    private long[] lockAll() {
+        long[] stamps = new long[stripes.length];
+        for (int i = 0; i < stripes.length; i++) {
+            stamps[i] = stripes[i].lock.writeLock();
+        }
+        return stamps;
+    }
+
+    private void unlockAll(long[] stamps) {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].lock.unlockWrite(stamps[i]);
+        }
+    }
+
+    public boolean containsId(int number) {
+        return rowOf(number) >= 0;
+    }
+
+    // Row index of the person with this ID, or -1 if absent
+    public int rowOf(int number) {
+        ensureIndexed();
+        Stripe stripe = stripeFor(number);
+        long stamp = stripe.lock.readLock();
+        try {
+            return stripe.byId.get(number);
+        } finally {
+            stripe.lock.unlockRead(stamp);
+        }
+    }
+
+    public PersonGUI findById(int number) {
+        int row = rowOf(number);
+        return row < 0 ? null : get(row);
+    }
+
+    // Removes everyone; readers racing with a clear may see either state
+    public void clear() {
+        int removed;
+        long sequence;
+        long commit = 0;
+        long[] stamps = lockAll();
+        try {
+            synchronized (appendLock) {
+                if (database != null) {
+                    commit = database.logClear();
+                }
+                removed = table.size;
+                reset();
+                sequence = changes.claim();
+            }
+        } finally {
+            unlockAll(stamps);
+        }
+        changes.publish(sequence, PersonChangeFeed.CLEAR, removed, null);
+        awaitDurable(commit);
+        compactIfNeeded();
+    }
+
+    // Delivers every add and clear after this call to the subscriber, on a thread
+    // of its own. Subscription.startRows() is the row count the events follow on
+    // from. The subscriber must not add to or clear this store from onEvent().
+    public PersonChangeFeed.Subscription subscribe(String name, PersonChangeFeed.Subscriber subscriber) {
+        synchronized (appendLock) {
+            return changes.subscribe(name, subscriber, table.size);
+        }
+    }
+
+    private void reset() {
+        for (Stripe stripe : stripes) {
+            stripe.byId = new IntHashIndex();
+        }
+        indexed = false; // rows replayed after this still need indexing
+        // The old generation's arenas go with its Table
+        table = new Table(new PersonGUI[16][], 0, 0, PersonRecordFile.empty(), new Arenas(), table.generation + 1);
+    }
+
+    private void compactIfNeeded() {
+        // Compacting only once the journal is half the table keeps rewrites amortized O(1) per row
+        if (database != null && database.journalRecords() >= Math.max(COMPACT_AFTER_RECORDS, table.size / 2)) {
+            synchronized (appendLock) {
+                if (database.journalRecords() >= Math.max(COMPACT_AFTER_RECORDS, table.size / 2)) {
+                    compact();
+                }
+            }
+        }
+    }
+
+    // Cuts the journal at the current row count and writes those rows as the
+    // new snapshot on the database's compactor thread. Rows below the cut never
+    // change, and clear() swaps in a new Table, so the writer can read the
+    // captured one without holding any lock. A failure is logged by the
+    // database and thrown from close().
+    private void compact() {
+        long covered;
+        Table cut;
+        synchronized (appendLock) {
+            try {
+                covered = database.rotate();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            cut = table;
+        }
+        PersonRecordFile snapshot = cut.snapshot;
+        database.compactInBackground(cut.size, new PersonRecordFile.RowSource() {
+            private PersonGUI cached(int row) {
+                PersonGUI[] page = (PersonGUI[]) PAGES.getAcquire(cut.pages, row >>> PAGE_SHIFT);
+                PersonGUI person = page == null ? null : (PersonGUI) ROWS.getAcquire(page, row & PAGE_MASK);
+                if (person == null && row >= cut.baseRows) {
+                    throw new IllegalStateException("Row " + row + " missing from compaction cut");
+                }
+                return person;
+            }
+
+            @Override
+            public int id(int row) {
+                PersonGUI person = cached(row);
+                return person == null ? snapshot.id(row) : person.getNumber();
+            }
+
+            @Override
+            public String name(int row) {
+                PersonGUI person = cached(row);
+                return person == null ? snapshot.name(row) : person.getName();
+            }
+
+            @Override
+            public double salary(int row) {
+                PersonGUI person = cached(row);
+                return person == null ? snapshot.salary(row) : person.getSalary();
+            }
+
+            @Override
+            public String occupation(int row) {
+                PersonGUI person = cached(row);
+                return person == null ? snapshot.occupation(row) : person.getOccupation();
+            }
+        }, covered);
+    }
+
+    // Stops the change feed, waits for compaction, flushes the journal and releases the snapshot
+    public void close() throws IOException {
+        changes.close();
+        if (database != null) {
+            database.close();
+        }
+    }
+}
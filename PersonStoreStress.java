@@ -0,0 +1,92 @@
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Stress harness for PersonStore: runs 1, 2, 4, 8 and 16 threads doing a mix
+// of ID lookups and adds against one in-memory store and prints throughput and
+// speedup over one thread, then checks that no add was lost or duplicated.
+//
+//     javac PersonStoreStress.java
+//     java PersonStoreStress [preloaded people] [ops per thread] [percent adds]
+public class PersonStoreStress {
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16};
+
+    public static void main(String[] args) throws InterruptedException {
+        int preloaded = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int opsPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+        int addPercent = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        System.out.println("PersonStore stress: " + preloaded + " people, " + opsPerThread
+            + " ops/thread, " + addPercent + "% adds, " + Runtime.getRuntime().availableProcessors() + " cores");
+        System.out.printf("%8s %14s %10s%n", "threads", "ops/s", "speedup");
+
+        run(preloaded, 1, Math.min(opsPerThread, 200_000), addPercent); // warm up the JIT
+        double baseline = 0;
+        for (int threads : THREAD_COUNTS) {
+            double opsPerSecond = run(preloaded, threads, opsPerThread, addPercent);
+            if (threads == 1) {
+                baseline = opsPerSecond;
+            }
+            System.out.printf("%8d %,14.0f %9.2fx%n", threads, opsPerSecond, opsPerSecond / baseline);
+        }
+    }
+
+    // Returns operations per second; throws if the store ends up inconsistent
+    private static double run(int preloaded, int threads, int opsPerThread, int addPercent) throws InterruptedException {
+        PersonStore store = new PersonStore();
+        for (int id = 0; id < preloaded; id++) {
+            store.add(new PersonGUI(id, "Person " + id, 30_000 + id % 90_000, "Job " + id % 50));
+        }
+
+        AtomicLong added = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                // Each thread adds its own ID range, plus a few IDs every thread races for
+                int nextId = preloaded + thread * opsPerThread;
+                long myAdds = 0;
+                try {
+                    start.await();
+                    for (int i = 0; i < opsPerThread; i++) {
+                        if (random.nextInt(100) < addPercent) {
+                            int id = random.nextInt(100) == 0 ? -1 - random.nextInt(1000) : nextId++;
+                            if (store.add(new PersonGUI(id, "New", 50_000, "Tester"))) {
+                                myAdds++;
+                            }
+                        } else if (store.rowOf(random.nextInt(preloaded)) < 0) {
+                            throw new IllegalStateException("Preloaded person went missing");
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    added.addAndGet(myAdds);
+                    finished.countDown();
+                }
+            }, "stress-" + t).start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        finished.await();
+        long elapsed = System.nanoTime() - begin;
+
+        verify(store, preloaded + added.get());
+        return (double) threads * opsPerThread * 1e9 / elapsed;
+    }
+
+    // Every row must be findable by its ID at exactly that row
+    private static void verify(PersonStore store, long expectedSize) {
+        if (store.size() != expectedSize) {
+            throw new IllegalStateException("Expected " + expectedSize + " people, found " + store.size());
+        }
+        for (int row = 0; row < store.size(); row++) {
+            if (store.rowOf(store.get(row).getNumber()) != row) {
+                throw new IllegalStateException("Row " + row + " is not indexed correctly");
+            }
+        }
+    }
+}
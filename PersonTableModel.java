@@ -0,0 +1,181 @@
+import java.util.Arrays;
+import javax.swing.table.AbstractTableModel;
+
+// Read-only table model that formats cells on demand straight from the PersonStore.
+// It shows either every row or a filtered view (store rows from a query), in
+// insertion order or in the order of a maintained SortedRowIndex. Sorted rows
+// are fetched a page at a time, so scrolling costs O(log n + page) per page.
+//
+// The model's row count and store generation change only in rowsAdded() and
+// cleared(), on the EDT, so JTable never sees rows it was not told about. A
+// clear the model has not been told about yet paints as empty cells.
+public class PersonTableModel extends AbstractTableModel {
+    private static final String[] COLUMNS = {"ID", "Name", "Salary ($)", "Occupation"};
+    private static final int PAGE_SIZE = 256;
+
+    private final PersonStore store;
+    private int rows;       // store rows announced through rowsAdded()
+    private int generation; // store generation those rows belong to
+    private int[] filter; // ascending store rows from a query; null shows every row
+    private int[] view;   // filter in display order
+
+    private SortedRowIndex sortIndex; // null keeps insertion order
+    private int sortColumn = -1;
+    private boolean descending;
+
+    // Cached page of sorted rows: ranks [pageStart, pageStart + pageLength)
+    private final int[] page = new int[PAGE_SIZE];
+    private int pageStart = -1;
+    private int pageLength;
+
+    public PersonTableModel(PersonStore store) {
+        this.store = store;
+        this.generation = store.generation();
+    }
+
+    @Override
+    public int getRowCount() {
+        return view != null ? view.length : rows;
+    }
+
+    @Override
+    public int getColumnCount() { return COLUMNS.length; }
+
+    @Override
+    public String getColumnName(int column) {
+        if (column != sortColumn) {
+            return COLUMNS[column];
+        }
+        return COLUMNS[column] + (descending ? " ▼" : " ▲");
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false; // Make table read-only
+    }
+
+    // Only the rows JTable actually paints are formatted
+    @Override
+    public Object getValueAt(int row, int column) {
+        PersonGUI person = store.getInGeneration(generation, storeRow(row));
+        if (person == null) {
+            return ""; // cleared; cleared() will empty the table
+        }
+        switch (column) {
+            case 0: return "A" + person.getNumber();
+            case 1: return person.getName();
+            case 2: return String.format("%.2f", person.getSalary());
+            default: return person.getOccupation();
+        }
+    }
+
+    public boolean isFiltered() { return filter != null; }
+    public int sortColumn() { return sortColumn; }
+    public boolean isDescending() { return descending; }
+
+    // Store row shown at the given table row
+    public int storeRow(int row) {
+        if (view != null) {
+            return view[row];
+        }
+        if (sortIndex == null) {
+            return row;
+        }
+        int rank = descending ? sortIndex.size() - 1 - row : row;
+        if (rank < pageStart || rank >= pageStart + pageLength) {
+            pageStart = rank - rank % PAGE_SIZE;
+            pageLength = sortIndex.page(pageStart, page, PAGE_SIZE);
+        }
+        return page[rank - pageStart];
+    }
+
+    // Table row showing the given store row, or -1 if it is filtered out
+    public int tableRow(int storeRow) {
+        if (storeRow < 0) {
+            return -1;
+        }
+        if (view != null) {
+            if (sortIndex == null) {
+                int index = Arrays.binarySearch(view, storeRow);
+                return index < 0 ? -1 : index;
+            }
+            for (int i = 0; i < view.length; i++) {
+                if (view[i] == storeRow) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        if (sortIndex == null) {
+            return storeRow;
+        }
+        int rank = sortIndex.rankOf(storeRow);
+        return rank < 0 || !descending ? rank : sortIndex.size() - 1 - rank;
+    }
+
+    // Show only these ascending store rows
+    public void showRows(int[] rows) {
+        filter = rows;
+        view = ordered(rows);
+        fireTableDataChanged();
+    }
+
+    public void showAll() {
+        filter = null;
+        view = null;
+        fireTableDataChanged();
+    }
+
+    // Sorts by the column's index (null index restores insertion order)
+    public void sortBy(int column, SortedRowIndex index, boolean descending) {
+        this.sortIndex = index;
+        this.sortColumn = index == null ? -1 : column;
+        this.descending = descending;
+        pageStart = -1;
+        view = ordered(filter);
+        fireTableDataChanged();
+    }
+
+    // A filtered view in display order: sorted by rank in the sort index
+    private int[] ordered(int[] rows) {
+        if (rows == null || sortIndex == null) {
+            return rows;
+        }
+        long[] keyed = new long[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            int rank = sortIndex.rankOf(rows[i]);
+            keyed[i] = (long) (rank < 0 ? Integer.MAX_VALUE : rank) << 32 | rows[i];
+        }
+        Arrays.sort(keyed);
+        int[] sorted = new int[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            sorted[descending ? rows.length - 1 - i : i] = (int) keyed[i];
+        }
+        return sorted;
+    }
+
+    // Call after appending a batch of rows to the store (a filtered view does not grow).
+    // With a sort active, the new rows must already be in the sort index.
+    public void rowsAdded(int firstRow, int lastRow) {
+        rows = lastRow + 1;
+        if (filter != null) {
+            return;
+        }
+        if (sortIndex != null) {
+            pageStart = -1;
+            fireTableDataChanged(); // new rows land anywhere in sorted order
+        } else {
+            fireTableRowsInserted(firstRow, lastRow);
+        }
+    }
+
+    // Call after clearing the store (and the sort indexes)
+    public void cleared() {
+        rows = 0;
+        generation = store.generation();
+        filter = null;
+        view = null;
+        pageStart = -1;
+        fireTableDataChanged();
+    }
+}
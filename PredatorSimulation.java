@@ -0,0 +1,608 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntConsumer;
+
+// The tut6 predator/prey rules without any Swing: agents on a width x height
+// grid take one random step per tick, then every alive predator catches the
+// alive prey within one cell of it. The game is over once no prey is left.
+//
+// tick() runs one step as fast as the CPU allows; start()/stop() run ticks on a
+// background thread, paced or flat out. Views are optional observers: they are
+// told after each tick and read what they need through sample(), so the engine
+// never waits on painting. All state changes happen under the engine's monitor.
+// Agents live in an AgentStore (parallel arrays); the engine adds an ID index.
+//
+// Runs are reproducible: every step is drawn from (seed, agent ID, tick), so a
+// seed plus the adds and predator changes fixes the whole run, which is what
+// a SimulationReplay log records.
+//
+// A tick has two phases, each split into independent tasks for a fork-join
+// pool (or run one after another without a pool):
+//   1. Move: agents are cut into ranges of the store that move independently,
+//      then are counted and bucketed by spatial tile.
+//      Tiles are sized to hold a few thousand agents, so a tile's catch index
+//      stays in cache, and there are enough of them to keep every thread busy.
+//   2. Resolve: each tile indexes its own prey and hunts them with its own
+//      predators plus the neighbouring tiles' predators standing on the one-cell
+//      border around it (the halo). A tile only ever writes its own prey.
+// A prey is caught if any predator ends up next to it; it is credited to the
+// lowest-numbered one, and catches are reported in agent order. Nothing
+// depends on scheduling, so every thread count gives the same run.
+//
+//     javac -encoding UTF-8 AgentStore.java SimRandom.java SimulationReplay.java SpatialHashGrid.java IntHashIndex.java IntList.java PredatorSimulation.java
+//     java -Xmx4g PredatorSimulation [width height agents predators ticks threads seed replay-log]
+public class PredatorSimulation {
+    // Told about the simulation's progress, on the thread that runs the ticks
+    // and while the engine is locked: keep it short (count, schedule a repaint)
+    public interface Observer {
+        default void caught(int predatorId, int victimId) {}
+        void ticked(PredatorSimulation simulation, long tick, int caught);
+    }
+
+    // Receives one agent of a sample()
+    public interface AgentVisitor {
+        void visit(int id, int x, int y, boolean predator, boolean alive);
+    }
+
+    private static final int MIN_RANGE = 16 * 1024; // agents per move/bucket task, at least
+    private static final int MIN_TILE = 64;         // cells per tile side, a power of two
+    private static final int AGENTS_PER_TILE = 4096;
+    private static final int TILES_PER_THREAD = 16; // at least, to balance uneven tiles
+    private static final int MAX_TILES = 4096;
+    private static final int RANGES_PER_THREAD = 4;
+
+    private final int width;
+    private final int height;
+    private final ForkJoinPool pool; // null runs every phase on the ticking thread
+    private final int parallelism;
+    private final long seed;
+    private final AgentStore agents = new AgentStore();
+    private final IntHashIndex indexById = new IntHashIndex();
+    private final List<Observer> observers = new CopyOnWriteArrayList<>();
+    private long tick;
+    private int preyAlive;
+    private int predatorsAlive;
+    private SimulationReplay recording;
+
+    // Tiles are (1 << tileShift) cells square, laid out again when the agent count calls for it
+    private int tileShift = -1;
+    private int tilesX;
+    private int tilesY;
+    private Tile[] tiles;
+
+    // Per-tick scratch
+    private int ranges;
+    private int[] tileCounts = new int[0]; // [range][tile][prey, predators] counts, then bucket cursors
+    private int[] byTile = new int[0];     // alive prey grouped by tile, then alive predators grouped by tile
+    private int[] tileX = new int[0];      // cell of byTile[slot], packed so tiles read their agents in order
+    private int[] tileY = new int[0];
+    private int[] caughtBy = new int[0];   // for prey slots that were caught, the predator credited
+    private long[] catches = new long[0];  // victim << 32 | predator, sorted to report in agent order
+    private final IntConsumer moveRange = this::moveRange;
+    private final IntConsumer bucketRange = this::bucketRange;
+    private final IntConsumer resolveTile = this::resolveTile;
+
+    private Thread runner;
+    private volatile boolean running;
+
+    public PredatorSimulation(int width, int height) {
+        this(width, height, new Random().nextLong(), null);
+    }
+
+    // Ticks on the given pool's threads, or on the caller's for a null pool;
+    // the same seed and commands give the same run whatever the pool
+    public PredatorSimulation(int width, int height, long seed, ForkJoinPool pool) {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("Grid must be at least 1 x 1: " + width + " x " + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.seed = seed;
+        this.pool = pool;
+        this.parallelism = pool == null ? 1 : pool.getParallelism();
+    }
+
+    public int width() { return width; }
+    public int height() { return height; }
+    public long seed() { return seed; }
+    public synchronized long tickCount() { return tick; }
+    public synchronized int size() { return agents.size(); }
+    public synchronized int preyAlive() { return preyAlive; }
+    public synchronized int predatorsAlive() { return predatorsAlive; }
+
+    public void addObserver(Observer observer) { observers.add(observer); }
+    public void removeObserver(Observer observer) { observers.remove(observer); }
+
+    public synchronized boolean contains(int id) {
+        return indexById.containsKey(id);
+    }
+
+    // Adds a prey at (x, y); returns false if an agent with that ID exists
+    public synchronized boolean add(int id, int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            throw new IllegalArgumentException("Position (" + x + ", " + y + ") is outside the " + width + " x " + height + " grid");
+        }
+        if (indexById.putIfAbsent(id, agents.size()) >= 0) {
+            return false;
+        }
+        agents.add(id, x, y);
+        preyAlive++;
+        if (recording != null) {
+            recording.added(id, x, y);
+        }
+        return true;
+    }
+
+    // Turns an agent into a predator or back; returns false if there is no such agent
+    public synchronized boolean setPredator(int id, boolean predator) {
+        int agent = indexById.get(id);
+        if (agent < 0) {
+            return false;
+        }
+        if (agents.isAlive(agent) && agents.isPredator(agent) != predator) {
+            predatorsAlive += predator ? 1 : -1;
+            preyAlive -= predator ? 1 : -1;
+        }
+        agents.setPredator(agent, predator);
+        if (recording != null) {
+            recording.predator(id, predator);
+        }
+        return true;
+    }
+
+    public synchronized void clearPredators() {
+        for (int agent = 0; agent < agents.size(); agent++) {
+            agents.setPredator(agent, false);
+        }
+        recount();
+        if (recording != null) {
+            recording.predatorsCleared();
+        }
+    }
+
+    private void recount() {
+        preyAlive = 0;
+        predatorsAlive = 0;
+        for (int agent = 0; agent < agents.size(); agent++) {
+            if (agents.isAlive(agent)) {
+                if (agents.isPredator(agent)) {
+                    predatorsAlive++;
+                } else {
+                    preyAlive++;
+                }
+            }
+        }
+    }
+
+    // Digest of every agent's ID, cell and state, for checking that two runs match
+    public synchronized long checksum() {
+        long hash = 0xCBF29CE484222325L ^ tick;
+        for (int agent = 0; agent < agents.size(); agent++) {
+            hash = (hash ^ agents.id(agent)) * 0x100000001B3L;
+            hash = (hash ^ ((long) agents.x(agent) << 32 | agents.y(agent))) * 0x100000001B3L;
+            hash = (hash ^ agents.state(agent)) * 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    // Logs the run from here on (see SimulationReplay), replacing any log being written
+    public synchronized void record(Path path) throws IOException {
+        stopRecording();
+        SimulationReplay log = SimulationReplay.create(path, width, height, seed, tick, agents.size());
+        for (int agent = 0; agent < agents.size(); agent++) {
+            log.agent(agents.id(agent), agents.x(agent), agents.y(agent), agents.state(agent));
+        }
+        recording = log;
+    }
+
+    public synchronized void stopRecording() throws IOException {
+        SimulationReplay log = recording;
+        recording = null;
+        if (log != null) {
+            log.close();
+        }
+    }
+
+    // For SimulationReplay: puts back an agent as it was when recording started
+    synchronized void restore(int id, int x, int y, byte state) {
+        if (!add(id, x, y)) {
+            throw new IllegalArgumentException("Agent " + id + " is restored twice");
+        }
+        int agent = agents.size() - 1;
+        agents.setPredator(agent, (state & AgentStore.PREDATOR) != 0);
+        if ((state & AgentStore.ALIVE) == 0) {
+            agents.kill(agent);
+        }
+    }
+
+    // For SimulationReplay: continues from the recorded tick once the agents are restored
+    synchronized void resumeAt(long tick) {
+        this.tick = tick;
+        recount();
+    }
+
+    // Calls visitor for every agent, in the order they were added, as of the last tick
+    public synchronized void sample(AgentVisitor visitor) {
+        for (int agent = 0; agent < agents.size(); agent++) {
+            visitor.visit(agents.id(agent), agents.x(agent), agents.y(agent), agents.isPredator(agent), agents.isAlive(agent));
+        }
+    }
+
+    // Moves everyone one step and resolves catches; returns the number of prey caught
+    public synchronized int tick() {
+        prepareTick();
+        forEach(ranges, moveRange);
+        assignTileSlots();
+        forEach(ranges, bucketRange);
+        forEach(tiles.length, resolveTile);
+
+        int caught = 0;
+        for (Tile tile : tiles) {
+            caught += tile.caught.size();
+        }
+        if (catches.length < caught) {
+            catches = new long[caught];
+        }
+        int next = 0;
+        for (Tile tile : tiles) {
+            for (int i = 0; i < tile.caught.size(); i++) {
+                int slot = tile.caught.get(i);
+                catches[next++] = (long) byTile[slot] << 32 | caughtBy[slot];
+            }
+        }
+        Arrays.sort(catches, 0, caught);
+        preyAlive -= caught;
+        tick++;
+        if (recording != null) {
+            recording.ticked(checksum());
+        }
+        for (int i = 0; i < caught; i++) {
+            int victim = (int) (catches[i] >>> 32);
+            int predator = (int) catches[i];
+            for (Observer observer : observers) {
+                observer.caught(agents.id(predator), agents.id(victim));
+            }
+        }
+        for (Observer observer : observers) {
+            observer.ticked(this, tick, caught);
+        }
+        return caught;
+    }
+
+    private void prepareTick() {
+        int count = agents.size();
+        layOutTiles(count);
+        ranges = Math.min((count + MIN_RANGE - 1) / MIN_RANGE, RANGES_PER_THREAD * parallelism);
+        if (byTile.length < count) {
+            byTile = new int[count];
+            tileX = new int[count];
+            tileY = new int[count];
+            caughtBy = new int[count];
+        }
+        int countsLength = ranges * tiles.length * 2;
+        if (tileCounts.length < countsLength) {
+            tileCounts = new int[countsLength];
+        } else {
+            Arrays.fill(tileCounts, 0, countsLength, 0);
+        }
+    }
+
+    // Catches do not depend on the tiling, so it can follow the agent and thread counts
+    private void layOutTiles(int count) {
+        int wanted = Math.min(MAX_TILES, Math.max(TILES_PER_THREAD * parallelism, count / AGENTS_PER_TILE));
+        int shift = Integer.numberOfTrailingZeros(MIN_TILE);
+        while (((long) ((width - 1) >> shift) + 1) * (((height - 1) >> shift) + 1) > wanted) {
+            shift++;
+        }
+        if (shift == tileShift) {
+            return;
+        }
+        tileShift = shift;
+        tilesX = ((width - 1) >> shift) + 1;
+        tilesY = ((height - 1) >> shift) + 1;
+        tiles = new Tile[tilesX * tilesY];
+        for (int ty = 0; ty < tilesY; ty++) {
+            for (int tx = 0; tx < tilesX; tx++) {
+                tiles[ty * tilesX + tx] = new Tile(tx, ty);
+            }
+        }
+    }
+
+    // Agents [rangeStart(range), rangeStart(range + 1)) belong to one move/bucket task
+    private int rangeStart(int range) {
+        return (int) ((long) range * agents.size() / ranges);
+    }
+
+    private int tileOf(int x, int y) {
+        return (y >> tileShift) * tilesX + (x >> tileShift);
+    }
+
+    // Phase 1a: move a range of agents and count its alive prey and predators per tile
+    private void moveRange(int range) {
+        int from = rangeStart(range);
+        int to = rangeStart(range + 1);
+        agents.move(from, to, width, height, seed, tick);
+        int[] xs = agents.xs();
+        int[] ys = agents.ys();
+        int base = range * tiles.length;
+        for (int agent = from; agent < to; agent++) {
+            byte state = agents.state(agent);
+            if ((state & AgentStore.ALIVE) != 0) {
+                tileCounts[(base + tileOf(xs[agent], ys[agent])) * 2 + (state & AgentStore.PREDATOR) / AgentStore.PREDATOR]++;
+            }
+        }
+    }
+
+    // Phase 1b: turn the counts into each range's first slot per tile and kind.
+    // All prey come first, tile by tile, then all predators.
+    private void assignTileSlots() {
+        int slot = 0;
+        for (int kind = 0; kind < 2; kind++) {
+            for (int tile = 0; tile < tiles.length; tile++) {
+                int start = slot;
+                for (int range = 0; range < ranges; range++) {
+                    int index = (range * tiles.length + tile) * 2 + kind;
+                    int n = tileCounts[index];
+                    tileCounts[index] = slot;
+                    slot += n;
+                }
+                tiles[tile].setRange(kind, start, slot);
+            }
+        }
+    }
+
+    // Phase 1c: place one range's alive agents into their tile's slots, keeping agent order
+    private void bucketRange(int range) {
+        int from = rangeStart(range);
+        int to = rangeStart(range + 1);
+        int[] xs = agents.xs();
+        int[] ys = agents.ys();
+        int base = range * tiles.length;
+        for (int agent = from; agent < to; agent++) {
+            byte state = agents.state(agent);
+            if ((state & AgentStore.ALIVE) != 0) {
+                int x = xs[agent];
+                int y = ys[agent];
+                int slot = tileCounts[(base + tileOf(x, y)) * 2 + (state & AgentStore.PREDATOR) / AgentStore.PREDATOR]++;
+                byTile[slot] = agent;
+                tileX[slot] = x;
+                tileY[slot] = y;
+            }
+        }
+    }
+
+    // Phase 2, for one tile
+    private void resolveTile(int tile) {
+        tiles[tile].resolve();
+    }
+
+    // Runs body for 0..n-1, split across the pool if there is one
+    private void forEach(int n, IntConsumer body) {
+        if (pool == null || pool.getParallelism() == 1 || n <= 1) {
+            for (int i = 0; i < n; i++) {
+                body.accept(i);
+            }
+            return;
+        }
+        pool.invoke(new RangeTask(body, 0, n));
+    }
+
+    // Runs a range of task numbers, splitting it in half until one is left
+    private static final class RangeTask extends RecursiveAction {
+        private final IntConsumer body;
+        private final int from;
+        private final int to;
+
+        RangeTask(IntConsumer body, int from, int to) {
+            this.body = body;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                body.accept(from);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            RangeTask left = new RangeTask(body, from, mid);
+            left.fork();
+            new RangeTask(body, mid, to).compute();
+            left.join();
+        }
+    }
+
+    // A square block of cells and the prey standing on it. Its grid indexes
+    // byTile slots rather than agents, so everything it touches is contiguous.
+    private final class Tile {
+        private final int tx;
+        private final int ty;
+        private final int left;   // cells [left, right) x [top, bottom)
+        private final int top;
+        private final int right;
+        private final int bottom;
+        private final SpatialHashGrid preyGrid = new SpatialHashGrid();
+        private final IntList caught = new IntList(); // slots of the prey caught this tick
+        private final IntConsumer catchPrey = this::catchPrey;
+        private int preyFrom;     // this tile's prey are byTile[preyFrom, preyTo)
+        private int preyTo;
+        private int predatorFrom; // and its predators byTile[predatorFrom, predatorTo)
+        private int predatorTo;
+        private int hunter;       // predator (agent) whose neighbourhood catchPrey is visiting
+
+        Tile(int tx, int ty) {
+            this.tx = tx;
+            this.ty = ty;
+            left = tx << tileShift;
+            top = ty << tileShift;
+            right = (int) Math.min(width, (long) (tx + 1) << tileShift);
+            bottom = (int) Math.min(height, (long) (ty + 1) << tileShift);
+        }
+
+        void setRange(int kind, int from, int to) {
+            if (kind == 0) {
+                preyFrom = from;
+                preyTo = to;
+            } else {
+                predatorFrom = from;
+                predatorTo = to;
+            }
+        }
+
+        // Phase 2: find and kill every prey of this tile that has a predator next to it
+        void resolve() {
+            caught.clear();
+            if (preyFrom == preyTo) {
+                return;
+            }
+            preyGrid.rebuild(preyFrom, preyTo, tileX, tileY);
+            Arrays.fill(caughtBy, preyFrom, preyTo, -1);
+            for (int slot = predatorFrom; slot < predatorTo; slot++) {
+                hunt(slot);
+            }
+            // The halo: predators of the 8 neighbouring tiles within one cell of this one
+            for (int ny = Math.max(0, ty - 1); ny <= Math.min(tilesY - 1, ty + 1); ny++) {
+                for (int nx = Math.max(0, tx - 1); nx <= Math.min(tilesX - 1, tx + 1); nx++) {
+                    Tile neighbour = tiles[ny * tilesX + nx];
+                    if (neighbour == this) {
+                        continue;
+                    }
+                    for (int slot = neighbour.predatorFrom; slot < neighbour.predatorTo; slot++) {
+                        int x = tileX[slot];
+                        int y = tileY[slot];
+                        if (x >= left - 1 && x <= right && y >= top - 1 && y <= bottom) {
+                            hunt(slot);
+                        }
+                    }
+                }
+            }
+            for (int i = 0; i < caught.size(); i++) {
+                agents.kill(byTile[caught.get(i)]);
+            }
+        }
+
+        private void hunt(int predatorSlot) {
+            hunter = byTile[predatorSlot];
+            preyGrid.forEachNear(tileX[predatorSlot], tileY[predatorSlot], catchPrey);
+        }
+
+        // Predators arrive in no useful order, so keep the lowest-numbered one
+        private void catchPrey(int preySlot) {
+            int current = caughtBy[preySlot];
+            if (current < 0) {
+                caught.add(preySlot);
+                caughtBy[preySlot] = hunter;
+            } else if (hunter < current) {
+                caughtBy[preySlot] = hunter;
+            }
+        }
+    }
+
+    // Runs ticks on a background thread until stop(): one per interval, or as
+    // fast as possible for an interval of 0. Does nothing if already running.
+    public synchronized void start(long intervalNanos) {
+        if (runner != null) {
+            return;
+        }
+        running = true;
+        runner = new Thread(() -> runTicks(intervalNanos), "predator-simulation");
+        runner.setDaemon(true);
+        runner.start();
+    }
+
+    public synchronized boolean isRunning() {
+        return runner != null;
+    }
+
+    private void runTicks(long intervalNanos) {
+        long next = System.nanoTime();
+        while (running) {
+            if (intervalNanos > 0) {
+                next += intervalNanos;
+                long wait;
+                while (running && (wait = next - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(this, wait);
+                }
+                if (!running) {
+                    break;
+                }
+            }
+            tick();
+        }
+    }
+
+    // Stops the background ticks; no tick is in progress or starts once this returns
+    public void stop() {
+        Thread stopping;
+        synchronized (this) {
+            stopping = runner;
+            runner = null;
+            running = false;
+        }
+        if (stopping == null || stopping == Thread.currentThread()) {
+            return;
+        }
+        LockSupport.unpark(stopping);
+        boolean interrupted = false;
+        while (stopping.isAlive()) {
+            try {
+                stopping.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int width = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int height = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        int agents = args.length > 2 ? Integer.parseInt(args[2]) : 1_000_000;
+        int predators = args.length > 3 ? Integer.parseInt(args[3]) : agents / 100;
+        int ticks = args.length > 4 ? Integer.parseInt(args[4]) : 100;
+        int threads = args.length > 5 ? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 6 ? Long.parseLong(args[6]) : new Random().nextLong();
+        Path replayLog = args.length > 7 ? Path.of(args[7]) : null;
+
+        PredatorSimulation simulation = new PredatorSimulation(width, height, seed, threads > 1 ? new ForkJoinPool(threads) : null);
+        Random random = new Random(seed);
+        long setupStart = System.nanoTime();
+        for (int id = 1; id <= agents; id++) {
+            simulation.add(id, random.nextInt(width), random.nextInt(height));
+        }
+        for (int id = 1; id <= predators && id <= agents; id++) {
+            simulation.setPredator(id, true);
+        }
+        System.out.printf("%,d agents (%,d predators) on %,d x %,d, %d thread(s), seed %d, set up in %.1f ms%n",
+            agents, simulation.predatorsAlive(), width, height, threads, seed, (System.nanoTime() - setupStart) / 1e6);
+        if (replayLog != null) {
+            simulation.record(replayLog);
+        }
+
+        long start = System.nanoTime();
+        long caught = 0;
+        for (int i = 0; i < ticks && simulation.preyAlive() > 0; i++) {
+            caught += simulation.tick();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long done = simulation.tickCount();
+        System.out.printf("%,d ticks in %.2f s: %,.1f ticks/s, %,.0f agent-steps/s%n",
+            done, seconds, done / seconds, (double) done * agents / seconds);
+        System.out.printf("%,d prey caught, %,d left, checksum %016x%n", caught, simulation.preyAlive(), simulation.checksum());
+        if (replayLog != null) {
+            simulation.stopRecording();
+            System.out.printf("Replay log %s: %,d bytes%n", replayLog, Files.size(replayLog));
+        }
+    }
+}
@@ -0,0 +1,122 @@
+import java.util.Arrays;
+
+// Mergeable quantile sketch with logarithmic buckets (relative error ~1%).
+//
+// Each value falls into bucket ceil(log_gamma(|x|)), so adding is O(1) and two
+// sketches merge by adding bucket counts. Values whose magnitude is below
+// MIN_MAGNITUDE are counted as zero; NaN and infinities are ignored (an
+// infinite magnitude has no bucket).
+public class QuantileSketch {
+    private static final double RELATIVE_ACCURACY = 0.01;
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    private static final double MIN_MAGNITUDE = 1e-6;
+
+    private final Buckets positive = new Buckets();
+    private final Buckets negative = new Buckets();
+    private long zeroCount;
+    private long count;
+
+    public long count() { return count; }
+
+    public void add(double value) {
+        if (!Double.isFinite(value)) {
+            return;
+        }
+        if (value > MIN_MAGNITUDE) {
+            positive.increment(bucketOf(value), 1);
+        } else if (value < -MIN_MAGNITUDE) {
+            negative.increment(bucketOf(-value), 1);
+        } else {
+            zeroCount++;
+        }
+        count++;
+    }
+
+    private static int bucketOf(double magnitude) {
+        return (int) Math.ceil(Math.log(magnitude) / LOG_GAMMA);
+    }
+
+    // Midpoint of a bucket's value range
+    private static double valueOf(int bucket) {
+        return 2 * Math.pow(GAMMA, bucket) / (GAMMA + 1);
+    }
+
+    // Approximate q-quantile (0..1); NaN if empty
+    public double quantile(double q) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) Math.floor(Math.max(0, Math.min(1, q)) * (count - 1));
+
+        // Negative values, most negative (largest magnitude) first
+        long seen = 0;
+        for (int i = negative.counts.length - 1; i >= 0; i--) {
+            seen += negative.counts[i];
+            if (seen > rank) {
+                return -valueOf(negative.offset + i);
+            }
+        }
+        seen += zeroCount;
+        if (seen > rank) {
+            return 0;
+        }
+        for (int i = 0; i < positive.counts.length; i++) {
+            seen += positive.counts[i];
+            if (seen > rank) {
+                return valueOf(positive.offset + i);
+            }
+        }
+        return valueOf(positive.offset + positive.counts.length - 1);
+    }
+
+    public void merge(QuantileSketch other) {
+        positive.merge(other.positive);
+        negative.merge(other.negative);
+        zeroCount += other.zeroCount;
+        count += other.count;
+    }
+
+    public void clear() {
+        positive.clear();
+        negative.clear();
+        zeroCount = 0;
+        count = 0;
+    }
+
+    // Dense bucket counts covering indexes [offset, offset + counts.length)
+    private static class Buckets {
+        long[] counts = new long[0];
+        int offset;
+
+        void increment(int bucket, long by) {
+            if (counts.length == 0) {
+                counts = new long[64];
+                offset = bucket - 32;
+            }
+            if (bucket < offset) {
+                int grow = Math.max(offset - bucket, counts.length / 2);
+                long[] grown = new long[counts.length + grow];
+                System.arraycopy(counts, 0, grown, grow, counts.length);
+                counts = grown;
+                offset -= grow;
+            } else if (bucket >= offset + counts.length) {
+                counts = Arrays.copyOf(counts, Math.max(bucket - offset + 1, counts.length + counts.length / 2));
+            }
+            counts[bucket - offset] += by;
+        }
+
+        void merge(Buckets other) {
+            for (int i = 0; i < other.counts.length; i++) {
+                if (other.counts[i] != 0) {
+                    increment(other.offset + i, other.counts[i]);
+                }
+            }
+        }
+
+        void clear() {
+            counts = new long[0];
+            offset = 0;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+import javax.swing.*;
+import java.awt.*;
+import java.util.List;
+
+// Salary distribution charts drawn from the SalaryHistogram inside a SalaryStats:
+// a histogram of all salaries and an occupation x salary band heatmap of head
+// counts. Painting reads only the precomputed bins, so its cost depends on the
+// number of bins and occupations, never on the number of people.
+//
+// A 60 FPS timer repaints only when the histogram's version has changed, so
+// streaming adds animate smoothly and an idle window costs nothing.
+public class SalaryChartsPanel extends JPanel {
+    private static final int FRAME_MS = 16;
+    private static final int MIN_HEATMAP_ROW = 12;
+    private static final int LABEL_WIDTH = 90;
+    private static final Font LABEL_FONT = new Font("Arial", Font.PLAIN, 11);
+    private static final Font TITLE_FONT = new Font("Arial", Font.BOLD, 12);
+    private static final Color BAR_COLOR = new Color(70, 130, 180);
+    private static final Color GRID_COLOR = new Color(220, 220, 220);
+    private static final Color[] HEAT = heatPalette();
+
+    private final SalaryStats stats;
+    private final Timer frameTimer;
+    private long paintedVersion = -1;
+
+    public SalaryChartsPanel(SalaryStats stats) {
+        super(new GridLayout(1, 2, 10, 0));
+        this.stats = stats;
+        setBorder(BorderFactory.createTitledBorder("Salary Charts"));
+        setPreferredSize(new Dimension(0, 220));
+        add(new HistogramChart());
+        add(new HeatmapChart());
+        frameTimer = new Timer(FRAME_MS, e -> {
+            if (stats.histogram().version() != paintedVersion) {
+                paintedVersion = stats.histogram().version();
+                repaintCharts();
+            }
+        });
+        frameTimer.setCoalesce(true);
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        frameTimer.start();
+    }
+
+    @Override
+    public void removeNotify() {
+        frameTimer.stop();
+        super.removeNotify();
+    }
+
+    private void repaintCharts() {
+        for (Component chart : getComponents()) {
+            chart.repaint();
+        }
+    }
+
+    // White (no one) through light blue to dark blue (the largest cell)
+    private static Color[] heatPalette() {
+        Color[] palette = new Color[256];
+        for (int i = 0; i < palette.length; i++) {
+            float t = i / 255f;
+            palette[i] = new Color(
+                Math.round(255 - t * (255 - 25)),
+                Math.round(255 - t * (255 - 70)),
+                Math.round(255 - t * (255 - 140)));
+        }
+        return palette;
+    }
+
+    private static String salaryLabel(double salary) {
+        return "$" + Math.round(salary / 1000) + "k";
+    }
+
+    // Bars of the overall salary bins, scaled to the largest bin
+    private class HistogramChart extends JComponent {
+        @Override
+        protected void paintComponent(Graphics g) {
+            SalaryHistogram histogram = stats.histogram();
+            int width = getWidth();
+            int height = getHeight();
+            int top = 18;
+            int bottom = height - 16;
+            int plotHeight = Math.max(1, bottom - top);
+            g.setColor(getBackground());
+            g.fillRect(0, 0, width, height);
+            g.setFont(TITLE_FONT);
+            g.setColor(Color.DARK_GRAY);
+            g.drawString("Salary distribution", 4, 13);
+
+            long max = histogram.maxBinCount();
+            g.setColor(GRID_COLOR);
+            g.drawLine(0, bottom, width, bottom);
+            if (max > 0) {
+                g.setColor(BAR_COLOR);
+                for (int bin = 0; bin < SalaryHistogram.BINS; bin++) {
+                    int x = bin * width / SalaryHistogram.BINS;
+                    int barWidth = Math.max(1, (bin + 1) * width / SalaryHistogram.BINS - x - 1);
+                    int barHeight = (int) (histogram.count(bin) * plotHeight / max);
+                    g.fillRect(x, bottom - barHeight, barWidth, barHeight);
+                }
+            }
+            g.setFont(LABEL_FONT);
+            g.setColor(Color.DARK_GRAY);
+            g.drawString(salaryLabel(0), 0, height - 3);
+            String middle = salaryLabel(SalaryHistogram.BINS / 2 * SalaryHistogram.BIN_WIDTH);
+            g.drawString(middle, width / 2 - g.getFontMetrics().stringWidth(middle) / 2, height - 3);
+            String last = salaryLabel(SalaryHistogram.BINS * SalaryHistogram.BIN_WIDTH) + "+";
+            g.drawString(last, width - g.getFontMetrics().stringWidth(last), height - 3);
+            g.drawString("max " + max, width - 80, 13);
+        }
+    }
+
+    // One row per occupation, one column per salary bin, shaded by head count
+    private class HeatmapChart extends JComponent {
+        @Override
+        protected void paintComponent(Graphics g) {
+            SalaryHistogram histogram = stats.histogram();
+            int width = getWidth();
+            int height = getHeight();
+            int top = 18;
+            g.setColor(getBackground());
+            g.fillRect(0, 0, width, height);
+            g.setFont(TITLE_FONT);
+            g.setColor(Color.DARK_GRAY);
+            g.drawString("Head count by occupation and salary", 4, 13);
+
+            List<String> occupations = histogram.occupations();
+            if (occupations.isEmpty()) {
+                return;
+            }
+            int rowHeight = Math.max(MIN_HEATMAP_ROW, (height - top) / occupations.size());
+            int shown = Math.min(occupations.size(), (height - top) / rowHeight);
+            int plotWidth = Math.max(1, width - LABEL_WIDTH);
+            double scale = 255.0 / Math.max(1, histogram.maxCellCount());
+            g.setFont(LABEL_FONT);
+            FontMetrics metrics = g.getFontMetrics();
+            for (int r = 0; r < shown; r++) {
+                String occupation = occupations.get(r);
+                long[] counts = histogram.counts(occupation);
+                int y = top + r * rowHeight;
+                for (int bin = 0; bin < SalaryHistogram.BINS; bin++) {
+                    int x = LABEL_WIDTH + bin * plotWidth / SalaryHistogram.BINS;
+                    int cellWidth = LABEL_WIDTH + (bin + 1) * plotWidth / SalaryHistogram.BINS - x;
+                    // Any non-zero count gets at least the lightest visible shade
+                    g.setColor(HEAT[counts[bin] == 0 ? 0 : Math.max(16, (int) (counts[bin] * scale))]);
+                    g.fillRect(x, y, cellWidth, rowHeight - 1);
+                }
+                g.setColor(Color.DARK_GRAY);
+                String label = occupation;
+                if (metrics.stringWidth(label) > LABEL_WIDTH - 4) {
+                    while (label.length() > 1 && metrics.stringWidth(label + "…") > LABEL_WIDTH - 4) {
+                        label = label.substring(0, label.length() - 1);
+                    }
+                    label += "…";
+                }
+                g.drawString(label, 2, y + rowHeight - 2 - (rowHeight - metrics.getAscent()) / 2);
+            }
+            if (shown < occupations.size()) {
+                g.drawString("+" + (occupations.size() - shown) + " more", width - 70, 13);
+            }
+        }
+    }
+}
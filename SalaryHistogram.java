@@ -0,0 +1,86 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Salaries counted into fixed-width bins, overall and per occupation, so that
+// charts can be drawn from BINS numbers (or occupations x BINS for a heatmap)
+// instead of from the records. Adding is O(1); the largest counts and the
+// sorted occupation list are kept up to date as counts grow, and version()
+// changes whenever anything does, so a view can skip repaints when idle.
+public class SalaryHistogram {
+    public static final int BINS = 40;
+    public static final double BIN_WIDTH = 5_000; // $0 to $200k; the last bin also holds everything above
+
+    private final long[] overall = new long[BINS];
+    private final Map<String, long[]> byOccupation = new HashMap<>();
+    private final List<String> occupations = new ArrayList<>(); // sorted, ignoring case
+    private long maxBinCount;
+    private long maxCellCount;
+    private long version;
+
+    // Bin for a salary; negative salaries go in the first bin
+    public static int binOf(double salary) {
+        if (!(salary > 0)) {
+            return 0;
+        }
+        return (int) Math.min(BINS - 1, salary / BIN_WIDTH);
+    }
+
+    public long version() { return version; }
+    public long count(int bin) { return overall[bin]; }
+    public long maxBinCount() { return maxBinCount; }
+    public long maxCellCount() { return maxCellCount; }
+
+    // Occupations in display order (live view; only read on the owning thread)
+    public List<String> occupations() { return Collections.unmodifiableList(occupations); }
+
+    // Counts per bin for one occupation (live, do not modify)
+    public long[] counts(String occupation) {
+        long[] counts = byOccupation.get(occupation);
+        return counts != null ? counts : new long[BINS];
+    }
+
+    public void add(String occupation, double salary) {
+        int bin = binOf(salary);
+        maxBinCount = Math.max(maxBinCount, ++overall[bin]);
+        maxCellCount = Math.max(maxCellCount, ++row(occupation)[bin]);
+        version++;
+    }
+
+    public void merge(SalaryHistogram other) {
+        for (int bin = 0; bin < BINS; bin++) {
+            maxBinCount = Math.max(maxBinCount, overall[bin] += other.overall[bin]);
+        }
+        for (Map.Entry<String, long[]> entry : other.byOccupation.entrySet()) {
+            long[] counts = row(entry.getKey());
+            for (int bin = 0; bin < BINS; bin++) {
+                maxCellCount = Math.max(maxCellCount, counts[bin] += entry.getValue()[bin]);
+            }
+        }
+        version++;
+    }
+
+    public void clear() {
+        Arrays.fill(overall, 0);
+        byOccupation.clear();
+        occupations.clear();
+        maxBinCount = 0;
+        maxCellCount = 0;
+        version++;
+    }
+
+    // Counts for the occupation, creating its row (in sorted position) on first use
+    private long[] row(String occupation) {
+        long[] counts = byOccupation.get(occupation);
+        if (counts == null) {
+            counts = new long[BINS];
+            byOccupation.put(occupation, counts);
+            int position = Collections.binarySearch(occupations, occupation, String.CASE_INSENSITIVE_ORDER);
+            occupations.add(position < 0 ? -position - 1 : position, occupation);
+        }
+        return counts;
+    }
+}
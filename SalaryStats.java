@@ -0,0 +1,72 @@
+import java.util.HashMap;
+import java.util.Map;
+
+// Salary aggregates kept up to date as people are added: O(1) per add.
+// Tracks the overall totals, a breakdown per occupation and a binned salary
+// histogram for the charts; two instances can be merged (e.g. stats of a
+// background load into the live stats).
+public class SalaryStats {
+
+    // Running count/sum/min/max plus a quantile sketch for one group
+    public static class Summary {
+        private long count;
+        private double sum;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+        private final QuantileSketch sketch = new QuantileSketch();
+
+        public long count() { return count; }
+        public double sum() { return sum; }
+        public double min() { return count == 0 ? Double.NaN : min; }
+        public double max() { return count == 0 ? Double.NaN : max; }
+        public double average() { return count == 0 ? Double.NaN : sum / count; }
+        public double median() { return sketch.quantile(0.5); }
+        public double p95() { return sketch.quantile(0.95); }
+
+        void add(double salary) {
+            count++;
+            sum += salary;
+            min = Math.min(min, salary);
+            max = Math.max(max, salary);
+            sketch.add(salary);
+        }
+
+        void merge(Summary other) {
+            count += other.count;
+            sum += other.sum;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+            sketch.merge(other.sketch);
+        }
+    }
+
+    private Summary overall = new Summary();
+    private final Map<String, Summary> byOccupation = new HashMap<>();
+    private final SalaryHistogram histogram = new SalaryHistogram();
+
+    public Summary overall() { return overall; }
+    public SalaryHistogram histogram() { return histogram; }
+
+    // Per-occupation summaries (live view; copy before using off the owning thread)
+    public Map<String, Summary> byOccupation() { return byOccupation; }
+
+    public void add(String occupation, double salary) {
+        overall.add(salary);
+        byOccupation.computeIfAbsent(occupation, k -> new Summary()).add(salary);
+        histogram.add(occupation, salary);
+    }
+
+    public void merge(SalaryStats other) {
+        overall.merge(other.overall);
+        for (Map.Entry<String, Summary> entry : other.byOccupation.entrySet()) {
+            byOccupation.computeIfAbsent(entry.getKey(), k -> new Summary()).merge(entry.getValue());
+        }
+        histogram.merge(other.histogram);
+    }
+
+    public void clear() {
+        overall = new Summary();
+        byOccupation.clear();
+        histogram.clear();
+    }
+}
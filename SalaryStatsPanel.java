@@ -0,0 +1,98 @@
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// Side panel showing live salary statistics from a SalaryStats instance
+public class SalaryStatsPanel extends JPanel {
+    private static final String[] OVERALL_LABELS = {"People", "Total", "Average", "Min", "Max", "Median", "P95"};
+
+    private final SalaryStats stats;
+    private final JLabel[] overallValues = new JLabel[OVERALL_LABELS.length];
+    private final OccupationTableModel occupationModel = new OccupationTableModel();
+
+    public SalaryStatsPanel(SalaryStats stats) {
+        super(new BorderLayout(5, 5));
+        this.stats = stats;
+        setBorder(BorderFactory.createTitledBorder("Salary Statistics"));
+        setPreferredSize(new Dimension(300, 0));
+
+        JPanel overallPanel = new JPanel(new GridLayout(OVERALL_LABELS.length, 2, 5, 2));
+        for (int i = 0; i < OVERALL_LABELS.length; i++) {
+            JLabel label = new JLabel(OVERALL_LABELS[i] + ":");
+            label.setFont(new Font("Arial", Font.BOLD, 12));
+            overallValues[i] = new JLabel("-");
+            overallValues[i].setFont(new Font("Monospaced", Font.PLAIN, 12));
+            overallPanel.add(label);
+            overallPanel.add(overallValues[i]);
+        }
+
+        JTable occupationTable = new JTable(occupationModel);
+        occupationTable.setFont(new Font("Arial", Font.PLAIN, 12));
+        occupationTable.getTableHeader().setFont(new Font("Arial", Font.BOLD, 12));
+        occupationTable.getTableHeader().setBackground(new Color(176, 196, 222));
+
+        add(overallPanel, BorderLayout.NORTH);
+        add(new JScrollPane(occupationTable), BorderLayout.CENTER);
+        refresh();
+    }
+
+    // Re-reads the aggregates; cheap because it never touches individual records
+    public void refresh() {
+        SalaryStats.Summary overall = stats.overall();
+        overallValues[0].setText(String.valueOf(overall.count()));
+        overallValues[1].setText(money(overall.sum()));
+        overallValues[2].setText(money(overall.average()));
+        overallValues[3].setText(money(overall.min()));
+        overallValues[4].setText(money(overall.max()));
+        overallValues[5].setText("~" + money(overall.median()));
+        overallValues[6].setText("~" + money(overall.p95()));
+        occupationModel.reload(stats.byOccupation());
+    }
+
+    private static String money(double value) {
+        return Double.isNaN(value) ? "-" : String.format("$%,.2f", value);
+    }
+
+    // One row per occupation, sorted by name
+    private static class OccupationTableModel extends AbstractTableModel {
+        private static final String[] COLUMNS = {"Occupation", "Count", "Average", "Median", "P95"};
+
+        private final List<String> occupations = new ArrayList<>();
+        private final List<SalaryStats.Summary> summaries = new ArrayList<>();
+
+        void reload(Map<String, SalaryStats.Summary> byOccupation) {
+            occupations.clear();
+            summaries.clear();
+            occupations.addAll(byOccupation.keySet());
+            occupations.sort(String.CASE_INSENSITIVE_ORDER);
+            for (String occupation : occupations) {
+                summaries.add(byOccupation.get(occupation));
+            }
+            fireTableDataChanged();
+        }
+
+        @Override
+        public int getRowCount() { return occupations.size(); }
+
+        @Override
+        public int getColumnCount() { return COLUMNS.length; }
+
+        @Override
+        public String getColumnName(int column) { return COLUMNS[column]; }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            SalaryStats.Summary summary = summaries.get(row);
+            switch (column) {
+                case 0: return occupations.get(row);
+                case 1: return summary.count();
+                case 2: return String.format("%.2f", summary.average());
+                case 3: return String.format("~%.2f", summary.median());
+                default: return String.format("~%.2f", summary.p95());
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+// Counter-based random numbers: each draw is a pure function of (seed, stream,
+// counter), with no generator state to carry around or share. The simulation
+// keys its draws by (run seed, agent ID, tick), so an agent's step is the same
+// whichever thread computes it, in whatever order, and any tick can be
+// recomputed on its own.
+//
+// The function is two rounds of the SplitMix64 finalizer (the output mixer of
+// java.util.SplittableRandom): one turns seed and stream into a key, the other
+// scrambles key + counter.
+public class SimRandom {
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    public static long next(long seed, long stream, long counter) {
+        long key = mix(seed + stream * GOLDEN_GAMMA);
+        return mix(key + (counter + 1) * GOLDEN_GAMMA);
+    }
+
+    // Uniform in [0, bound) from the top 32 bits (multiply-shift; the bias is below bound / 2^32)
+    public static int nextInt(long seed, long stream, long counter, int bound) {
+        return (int) (((next(seed, stream, counter) >>> 32) * bound) >>> 32);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
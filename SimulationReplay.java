@@ -0,0 +1,263 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+// Compact log of a PredatorSimulation run, enough to rebuild the state after
+// any recorded tick.
+//
+// Every step is a function of (seed, agent ID, tick) (see SimRandom), so the
+// log holds no moves: a header with the grid, the seed and the agents as they
+// were when recording started, then the commands that changed the run (adds,
+// predator changes) in the order they happened, and per tick a marker and a
+// checksum of the state it produced. Replaying re-runs the ticks and checks
+// each checksum, so an engine change that alters the outcome is caught at the
+// exact tick it diverges.
+//
+//     header:  "PSIM", version byte, varint width, varint height, long seed,
+//              varlong start tick, varint agent count, then per agent
+//              zigzag varint ID, varint x, varint y, state byte
+//     records: ADD zigzag varint ID, varint x, varint y
+//              PREDATOR zigzag varint ID, 0 or 1
+//              CLEAR_PREDATORS
+//              TICK long checksum
+//
+// A torn last record (the writer died mid-way) ends the log like EOF does.
+//
+//     java SimulationReplay <log> [tick]
+public class SimulationReplay implements Closeable {
+    private static final int MAGIC = 0x5053494D; // "PSIM"
+    private static final byte VERSION = 1;
+
+    private static final byte ADD = 1;
+    private static final byte PREDATOR = 2;
+    private static final byte CLEAR_PREDATORS = 3;
+    private static final byte TICK = 4;
+
+    private final DataOutputStream out;
+    private IOException failure;
+
+    private SimulationReplay(DataOutputStream out) {
+        this.out = out;
+    }
+
+    // Starts a log; the simulation then writes agent() for each agent it has
+    static SimulationReplay create(Path path, int width, int height, long seed, long startTick, int agentCount) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 64 * 1024));
+        SimulationReplay log = new SimulationReplay(out);
+        try {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            writeVarLong(out, width);
+            writeVarLong(out, height);
+            out.writeLong(seed);
+            writeVarLong(out, startTick);
+            writeVarLong(out, agentCount);
+        } catch (IOException e) {
+            out.close();
+            throw e;
+        }
+        return log;
+    }
+
+    // The writers below are called under the simulation's lock, often from its
+    // ticking thread, so a failed write is kept and thrown by close()
+    void agent(int id, int x, int y, byte state) {
+        if (failure == null) {
+            try {
+                writeVarLong(out, zigzag(id));
+                writeVarLong(out, x);
+                writeVarLong(out, y);
+                out.writeByte(state);
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+    }
+
+    void added(int id, int x, int y) {
+        if (failure == null) {
+            try {
+                out.writeByte(ADD);
+                writeVarLong(out, zigzag(id));
+                writeVarLong(out, x);
+                writeVarLong(out, y);
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+    }
+
+    void predator(int id, boolean predator) {
+        if (failure == null) {
+            try {
+                out.writeByte(PREDATOR);
+                writeVarLong(out, zigzag(id));
+                out.writeByte(predator ? 1 : 0);
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+    }
+
+    void predatorsCleared() {
+        if (failure == null) {
+            try {
+                out.writeByte(CLEAR_PREDATORS);
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+    }
+
+    void ticked(long checksum) {
+        if (failure == null) {
+            try {
+                out.writeByte(TICK);
+                out.writeLong(checksum);
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            out.close();
+        } catch (IOException e) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // Rebuilds the run in a log up to and including tick `toTick` (or to the
+    // end of the log for a negative toTick), checking every tick on the way
+    public static PredatorSimulation replay(Path path, long toTick, ForkJoinPool pool) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 64 * 1024))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(path + " is not a simulation replay log");
+            }
+            int version = in.readByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported replay log version " + version);
+            }
+            int width = (int) readVarLong(in);
+            int height = (int) readVarLong(in);
+            long seed = in.readLong();
+            long startTick = readVarLong(in);
+            int agentCount = (int) readVarLong(in);
+            if (toTick >= 0 && toTick < startTick) {
+                throw new IOException("Replay log starts at tick " + startTick + ", after tick " + toTick);
+            }
+
+            PredatorSimulation simulation = new PredatorSimulation(width, height, seed, pool);
+            for (int i = 0; i < agentCount; i++) {
+                int id = unzigzag(readVarLong(in));
+                int x = (int) readVarLong(in);
+                int y = (int) readVarLong(in);
+                simulation.restore(id, x, y, in.readByte());
+            }
+            simulation.resumeAt(startTick);
+
+            while (toTick < 0 || simulation.tickCount() < toTick) {
+                int type = in.read();
+                if (type < 0) {
+                    break;
+                }
+                try {
+                    if (!apply(type, in, simulation)) {
+                        throw new IOException("Unknown replay record type " + type + " after tick " + simulation.tickCount());
+                    }
+                } catch (EOFException e) {
+                    break; // torn last record
+                }
+            }
+            if (toTick >= 0 && simulation.tickCount() < toTick) {
+                throw new IOException("Replay log ends at tick " + simulation.tickCount() + ", before tick " + toTick);
+            }
+            return simulation;
+        }
+    }
+
+    private static boolean apply(int type, DataInputStream in, PredatorSimulation simulation) throws IOException {
+        switch (type) {
+            case ADD: {
+                int id = unzigzag(readVarLong(in));
+                int x = (int) readVarLong(in);
+                int y = (int) readVarLong(in);
+                simulation.add(id, x, y);
+                return true;
+            }
+            case PREDATOR: {
+                int id = unzigzag(readVarLong(in));
+                simulation.setPredator(id, in.readByte() != 0);
+                return true;
+            }
+            case CLEAR_PREDATORS:
+                simulation.clearPredators();
+                return true;
+            case TICK: {
+                long expected = in.readLong();
+                simulation.tick();
+                if (simulation.checksum() != expected) {
+                    throw new IOException("Replay diverged at tick " + simulation.tickCount());
+                }
+                return true;
+            }
+            default:
+                return false;
+        }
+    }
+
+    private static long zigzag(int value) {
+        return ((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL;
+    }
+
+    private static int unzigzag(long value) {
+        return (int) (value >>> 1) ^ -(int) (value & 1);
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Replay log has an over-long varint");
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java SimulationReplay <log> [tick]");
+            System.exit(2);
+        }
+        long toTick = args.length > 1 ? Long.parseLong(args[1]) : -1;
+        long start = System.nanoTime();
+        PredatorSimulation simulation = replay(Path.of(args[0]), toTick, null);
+        System.out.printf("Tick %,d: %,d agents, %,d prey and %,d predators alive, checksum %016x (replayed in %.2f s)%n",
+            simulation.tickCount(), simulation.size(), simulation.preyAlive(), simulation.predatorsAlive(),
+            simulation.checksum(), (System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,324 @@
+import java.util.Arrays;
+
+// Store rows kept in sorted order by a counted B+-tree, so that a sorted table
+// can be maintained and paged without re-sorting.
+//
+// Leaves hold up to LEAF_CAPACITY row numbers and are linked left to right;
+// inner nodes keep the smallest row of each child plus each child's row count.
+// insert(), rankOf() and rowAt() are O(log n), and page() costs O(log n + page)
+// because it walks the leaf chain from the first row it needs.
+//
+// Rows that compare equal are ordered by row number, so the order is total and
+// every row has exactly one rank. Not thread-safe.
+public class SortedRowIndex {
+    private static final int LEAF_CAPACITY = 128;
+    private static final int INNER_CAPACITY = 64;
+
+    // Compares two store rows by the sort key
+    public interface RowComparator {
+        int compare(int rowA, int rowB);
+    }
+
+    private static class Node {
+        int count; // entries used in this node
+    }
+
+    private static final class Leaf extends Node {
+        final int[] rows = new int[LEAF_CAPACITY];
+        Leaf next;
+    }
+
+    private static final class Inner extends Node {
+        final Node[] children = new Node[INNER_CAPACITY];
+        final int[] minRows = new int[INNER_CAPACITY];
+        final int[] sizes = new int[INNER_CAPACITY];
+    }
+
+    private final RowComparator order;
+    private Node root;
+    private int size;
+
+    public SortedRowIndex(RowComparator order) {
+        this.order = order;
+        this.root = new Leaf();
+    }
+
+    // Index over rows that are already in sorted order, built bottom-up in O(n)
+    public static SortedRowIndex build(int[] sortedRows, int count, RowComparator order) {
+        SortedRowIndex index = new SortedRowIndex(order);
+        if (count == 0) {
+            return index;
+        }
+        // Fill leaves three-quarters full so early inserts rarely split
+        int perLeaf = LEAF_CAPACITY * 3 / 4;
+        int leafCount = (count + perLeaf - 1) / perLeaf;
+        Node[] level = new Node[leafCount];
+        int[] levelMin = new int[leafCount];
+        int[] levelSize = new int[leafCount];
+        Leaf previous = null;
+        for (int i = 0; i < leafCount; i++) {
+            Leaf leaf = new Leaf();
+            int from = i * perLeaf;
+            leaf.count = Math.min(perLeaf, count - from);
+            System.arraycopy(sortedRows, from, leaf.rows, 0, leaf.count);
+            if (previous != null) {
+                previous.next = leaf;
+            }
+            previous = leaf;
+            level[i] = leaf;
+            levelMin[i] = leaf.rows[0];
+            levelSize[i] = leaf.count;
+        }
+
+        int perInner = INNER_CAPACITY * 3 / 4;
+        while (level.length > 1) {
+            int parents = (level.length + perInner - 1) / perInner;
+            Node[] upper = new Node[parents];
+            int[] upperMin = new int[parents];
+            int[] upperSize = new int[parents];
+            for (int p = 0; p < parents; p++) {
+                Inner inner = new Inner();
+                int from = p * perInner;
+                inner.count = Math.min(perInner, level.length - from);
+                System.arraycopy(level, from, inner.children, 0, inner.count);
+                System.arraycopy(levelMin, from, inner.minRows, 0, inner.count);
+                System.arraycopy(levelSize, from, inner.sizes, 0, inner.count);
+                upper[p] = inner;
+                upperMin[p] = inner.minRows[0];
+                for (int c = 0; c < inner.count; c++) {
+                    upperSize[p] += inner.sizes[c];
+                }
+            }
+            level = upper;
+            levelMin = upperMin;
+            levelSize = upperSize;
+        }
+        index.root = level[0];
+        index.size = count;
+        return index;
+    }
+
+    public int size() { return size; }
+
+    public void clear() {
+        root = new Leaf();
+        size = 0;
+    }
+
+    private int compare(int rowA, int rowB) {
+        int result = order.compare(rowA, rowB);
+        return result != 0 ? result : Integer.compare(rowA, rowB);
+    }
+
+    // Index of the last child whose smallest row is <= row (0 if none)
+    private int childFor(Inner inner, int row) {
+        int low = 1;
+        int high = inner.count - 1;
+        int found = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (compare(inner.minRows[mid], row) <= 0) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    // First position in the leaf whose row sorts at or after the given row
+    private int positionIn(Leaf leaf, int row) {
+        int low = 0;
+        int high = leaf.count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(leaf.rows[mid], row) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    public void insert(int row) {
+        Node sibling = insert(root, row);
+        if (sibling != null) {
+            Inner newRoot = new Inner();
+            newRoot.count = 2;
+            newRoot.children[0] = root;
+            newRoot.children[1] = sibling;
+            newRoot.minRows[0] = minRow(root);
+            newRoot.minRows[1] = minRow(sibling);
+            newRoot.sizes[0] = sizeOf(root);
+            newRoot.sizes[1] = sizeOf(sibling);
+            root = newRoot;
+        }
+        size++;
+    }
+
+    // Inserts below node; returns the new right sibling if node had to split
+    private Node insert(Node node, int row) {
+        if (node instanceof Leaf) {
+            Leaf leaf = (Leaf) node;
+            int position = positionIn(leaf, row);
+            if (leaf.count < LEAF_CAPACITY) {
+                System.arraycopy(leaf.rows, position, leaf.rows, position + 1, leaf.count - position);
+                leaf.rows[position] = row;
+                leaf.count++;
+                return null;
+            }
+            Leaf right = new Leaf();
+            int half = LEAF_CAPACITY / 2;
+            System.arraycopy(leaf.rows, half, right.rows, 0, LEAF_CAPACITY - half);
+            right.count = LEAF_CAPACITY - half;
+            leaf.count = half;
+            right.next = leaf.next;
+            leaf.next = right;
+            if (position <= half) {
+                insert(leaf, row);
+            } else {
+                insert(right, row);
+            }
+            return right;
+        }
+
+        Inner inner = (Inner) node;
+        int child = childFor(inner, row);
+        Node split = insert(inner.children[child], row);
+        if (compare(row, inner.minRows[child]) < 0) {
+            inner.minRows[child] = row;
+        }
+        if (split == null) {
+            inner.sizes[child]++;
+            return null;
+        }
+        inner.sizes[child] = sizeOf(inner.children[child]);
+        return addChild(inner, child + 1, split);
+    }
+
+    // Adds a child at position; returns the new right sibling if inner had to split
+    private Node addChild(Inner inner, int position, Node child) {
+        if (inner.count < INNER_CAPACITY) {
+            int moved = inner.count - position;
+            System.arraycopy(inner.children, position, inner.children, position + 1, moved);
+            System.arraycopy(inner.minRows, position, inner.minRows, position + 1, moved);
+            System.arraycopy(inner.sizes, position, inner.sizes, position + 1, moved);
+            inner.children[position] = child;
+            inner.minRows[position] = minRow(child);
+            inner.sizes[position] = sizeOf(child);
+            inner.count++;
+            return null;
+        }
+        Inner right = new Inner();
+        int half = INNER_CAPACITY / 2;
+        System.arraycopy(inner.children, half, right.children, 0, INNER_CAPACITY - half);
+        System.arraycopy(inner.minRows, half, right.minRows, 0, INNER_CAPACITY - half);
+        System.arraycopy(inner.sizes, half, right.sizes, 0, INNER_CAPACITY - half);
+        Arrays.fill(inner.children, half, INNER_CAPACITY, null);
+        right.count = INNER_CAPACITY - half;
+        inner.count = half;
+        if (position <= half) {
+            addChild(inner, position, child);
+        } else {
+            addChild(right, position - half, child);
+        }
+        return right;
+    }
+
+    private static int minRow(Node node) {
+        while (node instanceof Inner) {
+            node = ((Inner) node).children[0];
+        }
+        return ((Leaf) node).rows[0];
+    }
+
+    private static int sizeOf(Node node) {
+        if (node instanceof Leaf) {
+            return node.count;
+        }
+        Inner inner = (Inner) node;
+        int total = 0;
+        for (int i = 0; i < inner.count; i++) {
+            total += inner.sizes[i];
+        }
+        return total;
+    }
+
+    // Position of the row in sorted order, or -1 if it is not in the index
+    public int rankOf(int row) {
+        Node node = root;
+        int rank = 0;
+        while (node instanceof Inner) {
+            Inner inner = (Inner) node;
+            int child = childFor(inner, row);
+            for (int i = 0; i < child; i++) {
+                rank += inner.sizes[i];
+            }
+            node = inner.children[child];
+        }
+        Leaf leaf = (Leaf) node;
+        int position = positionIn(leaf, row);
+        return position < leaf.count && leaf.rows[position] == row ? rank + position : -1;
+    }
+
+    // Row at the given rank
+    public int rowAt(int rank) {
+        int[] one = new int[1];
+        page(rank, one, 1);
+        return one[0];
+    }
+
+    // Copies up to `count` rows starting at rank `from` into out; returns how many were copied
+    public int page(int from, int[] out, int count) {
+        if (from < 0 || from >= size) {
+            throw new IndexOutOfBoundsException("Rank " + from + " of " + size);
+        }
+        Node node = root;
+        int offset = from;
+        while (node instanceof Inner) {
+            Inner inner = (Inner) node;
+            int child = 0;
+            while (offset >= inner.sizes[child]) {
+                offset -= inner.sizes[child];
+                child++;
+            }
+            node = inner.children[child];
+        }
+        int copied = 0;
+        for (Leaf leaf = (Leaf) node; leaf != null && copied < count; leaf = leaf.next, offset = 0) {
+            int n = Math.min(leaf.count - offset, count - copied);
+            System.arraycopy(leaf.rows, offset, out, copied, n);
+            copied += n;
+        }
+        return copied;
+    }
+
+    // Stable merge sort of rows by the comparator (ties keep their input order)
+    public static void sort(int[] rows, int count, RowComparator order) {
+        int[] buffer = new int[count];
+        for (int width = 1; width < count; width *= 2) {
+            for (int low = 0; low < count - width; low += 2 * width) {
+                int mid = low + width;
+                int high = Math.min(low + 2 * width, count);
+                if (order.compare(rows[mid - 1], rows[mid]) <= 0) {
+                    continue; // already in order
+                }
+                int i = low;
+                int j = mid;
+                int k = low;
+                while (i < mid && j < high) {
+                    buffer[k++] = order.compare(rows[j], rows[i]) < 0 ? rows[j++] : rows[i++];
+                }
+                while (i < mid) {
+                    buffer[k++] = rows[i++];
+                }
+                while (j < high) {
+                    buffer[k++] = rows[j++];
+                }
+                System.arraycopy(buffer, low, rows, low, high - low);
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+// Agents bucketed by the grid cell they stand on, for "who is next to me"
+// queries without comparing every pair.
+//
+// Cells are hashed into a power-of-two table sized to the number of agents, so
+// memory stays proportional to the agents however large the grid is. rebuild()
+// is a counting sort by bucket (O(agents + buckets)); forEachNear() looks at the
+// 3x3 block of cells around a point and checks each bucket entry's exact cell,
+// so hash collisions cost time but never produce wrong neighbours.
+public class SpatialHashGrid {
+    private int mask;
+    private int[] bucketStart = new int[1]; // entries of bucket b are [bucketStart[b], bucketStart[b + 1])
+    private int[] cursor = new int[0];
+    private int[] entries = new int[0];     // agent numbers, grouped by bucket
+    private int[] entryX = new int[0];      // cell of each entry, for the exact-cell check
+    private int[] entryY = new int[0];
+    private int size;
+
+    public int size() { return size; }
+
+    private int bucketOf(int x, int y) {
+        int h = x * 0x9E3779B1 ^ y * 0x85EBCA6B;
+        return (h ^ h >>> 15) & mask;
+    }
+
+    // Indexes agents[0, count), whose cells are xs[agent], ys[agent]
+    public void rebuild(int[] agents, int count, int[] xs, int[] ys) {
+        rebuild(agents, 0, count, xs, ys);
+    }
+
+    // Indexes the agent numbers from..to-1 themselves, whose cells are xs[i],
+    // ys[i]; for callers that keep the coordinates packed next to each other
+    public void rebuild(int from, int to, int[] xs, int[] ys) {
+        rebuild(null, from, to, xs, ys);
+    }
+
+    private void rebuild(int[] agents, int from, int to, int[] xs, int[] ys) {
+        int count = to - from;
+        int buckets = Integer.highestOneBit(Math.max(16, count) - 1) << 1;
+        if (bucketStart.length != buckets + 1) {
+            bucketStart = new int[buckets + 1];
+            cursor = new int[buckets];
+        } else {
+            Arrays.fill(bucketStart, 0);
+        }
+        if (entries.length < count) {
+            entries = new int[count];
+            entryX = new int[count];
+            entryY = new int[count];
+        }
+        mask = buckets - 1;
+        size = count;
+
+        for (int i = from; i < to; i++) {
+            int agent = agents == null ? i : agents[i];
+            bucketStart[bucketOf(xs[agent], ys[agent]) + 1]++;
+        }
+        for (int b = 0; b < buckets; b++) {
+            bucketStart[b + 1] += bucketStart[b];
+        }
+        System.arraycopy(bucketStart, 0, cursor, 0, buckets);
+        for (int i = from; i < to; i++) {
+            int agent = agents == null ? i : agents[i];
+            int x = xs[agent];
+            int y = ys[agent];
+            int slot = cursor[bucketOf(x, y)]++;
+            entries[slot] = agent;
+            entryX[slot] = x;
+            entryY[slot] = y;
+        }
+    }
+
+    // Calls action for every indexed agent within one cell (Chebyshev distance 1) of (x, y)
+    public void forEachNear(int x, int y, IntConsumer action) {
+        for (int cy = y - 1; cy <= y + 1; cy++) {
+            for (int cx = x - 1; cx <= x + 1; cx++) {
+                int b = bucketOf(cx, cy);
+                for (int k = bucketStart[b], end = bucketStart[b + 1]; k < end; k++) {
+                    if (entryX[k] == cx && entryY[k] == cy) {
+                        action.accept(entries[k]);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,233 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Append-only off-heap store of strings addressed by int handles.
+//
+// Strings are kept as UTF-8 in direct ByteBuffer chunks, each entry a 2-byte
+// length followed by the bytes, so millions of names cost no heap beyond the
+// int handle that refers to them. A deduplicating arena (for low-cardinality
+// fields such as occupations) also hashes the bytes so an equal string gets
+// the existing handle back, and keeps one decoded String per distinct value so
+// get() allocates nothing.
+//
+// add() is synchronized; get() takes no lock and is safe for any handle that
+// was published to the reading thread after add() returned it.
+//
+// Handles are never freed one by one: an arena keeps every string until it
+// is cleared or dropped as a whole, so owners scope an arena to data that goes
+// away together (PersonStore keeps one pair per store generation).
+public class StringArena {
+    public static final int MAX_BYTES = 0xFFFF;
+
+    private static final int CHUNK_BITS = 20;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int OFFSET_MASK = CHUNK_SIZE - 1;
+
+    private volatile ByteBuffer[] chunks = new ByteBuffer[4];
+    private int chunkCount;
+    private int chunkPos = CHUNK_SIZE; // forces a chunk on the first add
+    private byte[] scratch = new byte[256];
+
+    // Dedup state: handle = index into positions/decoded
+    private final boolean dedup;
+    private volatile int[] positions;
+    private volatile String[] decoded;
+    private int count;
+    private int[] table; // open addressing over handle + 1, 0 = empty
+
+    public StringArena(boolean dedup) {
+        this.dedup = dedup;
+        if (dedup) {
+            positions = new int[16];
+            decoded = new String[16];
+            table = new int[32];
+        }
+    }
+
+    // True if the string is within MAX_BYTES once encoded as UTF-8
+    public static boolean fits(String text) {
+        int chars = text.length();
+        if (chars * 3 <= MAX_BYTES) {
+            return true;
+        }
+        if (chars > MAX_BYTES) {
+            return false;
+        }
+        int bytes = 0;
+        for (int i = 0; i < chars; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < chars && Character.isLowSurrogate(text.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes <= MAX_BYTES;
+    }
+
+    // Handle for the string, appending its bytes (or finding an equal entry when deduplicating)
+    public synchronized int add(String text) {
+        int length = encode(text);
+        if (!dedup) {
+            return append(length);
+        }
+        int hash = hash(scratch, length);
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        while (table[slot] != 0) {
+            int handle = table[slot] - 1;
+            if (sameBytes(positions[handle], length)) {
+                return handle;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        int handle = count;
+        if (handle == positions.length) {
+            positions = Arrays.copyOf(positions, handle * 2);
+            decoded = Arrays.copyOf(decoded, handle * 2);
+        }
+        positions[handle] = append(length);
+        decoded[handle] = text;
+        table[slot] = handle + 1;
+        count++;
+        if (count * 2 > table.length) {
+            rehash();
+        }
+        return handle;
+    }
+
+    // Encodes into scratch, with a fast path for ASCII; returns the byte length
+    private int encode(String text) {
+        int chars = text.length();
+        if (scratch.length < chars * 3) {
+            scratch = new byte[Math.max(chars * 3, scratch.length * 2)];
+        }
+        int length = 0;
+        for (; length < chars; length++) {
+            char c = text.charAt(length);
+            if (c >= 0x80) {
+                byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+                length = bytes.length;
+                System.arraycopy(bytes, 0, scratch, 0, length);
+                break;
+            }
+            scratch[length] = (byte) c;
+        }
+        if (length > MAX_BYTES) {
+            throw new IllegalArgumentException("Strings are limited to " + MAX_BYTES + " UTF-8 bytes");
+        }
+        return length;
+    }
+
+    // Copies scratch into the current chunk; returns the entry's position
+    private int append(int length) {
+        if (chunkPos + 2 + length > CHUNK_SIZE) {
+            if (chunkCount == (Integer.MAX_VALUE >>> CHUNK_BITS) + 1) {
+                throw new IllegalStateException("String arena is full");
+            }
+            ByteBuffer[] current = chunks;
+            if (chunkCount == current.length) {
+                current = Arrays.copyOf(current, chunkCount * 2);
+            }
+            if (current[chunkCount] == null) {
+                current[chunkCount] = ByteBuffer.allocateDirect(CHUNK_SIZE);
+            }
+            chunkCount++;
+            chunkPos = 0;
+            chunks = current;
+        }
+        ByteBuffer chunk = chunks[chunkCount - 1];
+        int position = (chunkCount - 1) << CHUNK_BITS | chunkPos;
+        chunk.putShort(chunkPos, (short) length);
+        chunk.put(chunkPos + 2, scratch, 0, length);
+        chunkPos += 2 + length;
+        return position;
+    }
+
+    private boolean sameBytes(int position, int length) {
+        ByteBuffer chunk = chunks[position >>> CHUNK_BITS];
+        int offset = position & OFFSET_MASK;
+        if ((chunk.getShort(offset) & 0xFFFF) != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (chunk.get(offset + 2 + i) != scratch[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(byte[] bytes, int length) {
+        int h = 1;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + bytes[i];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private void rehash() {
+        int[] grown = new int[table.length * 2];
+        int mask = grown.length - 1;
+        for (int handle = 0; handle < count; handle++) {
+            int slot = hashAt(positions[handle]) & mask;
+            while (grown[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            grown[slot] = handle + 1;
+        }
+        table = grown;
+    }
+
+    private int hashAt(int position) {
+        ByteBuffer chunk = chunks[position >>> CHUNK_BITS];
+        int offset = position & OFFSET_MASK;
+        int length = chunk.getShort(offset) & 0xFFFF;
+        int h = 1;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + chunk.get(offset + 2 + i);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    // The string for a handle returned by add()
+    public String get(int handle) {
+        if (dedup) {
+            return decoded[handle];
+        }
+        ByteBuffer chunk = chunks[handle >>> CHUNK_BITS];
+        int offset = handle & OFFSET_MASK;
+        byte[] bytes = new byte[chunk.getShort(offset) & 0xFFFF];
+        chunk.get(offset + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Distinct strings held by a deduplicating arena
+    public synchronized int distinctCount() {
+        return count;
+    }
+
+    // Off-heap bytes in use
+    public synchronized long usedBytes() {
+        return chunkCount == 0 ? 0 : (long) (chunkCount - 1) * CHUNK_SIZE + chunkPos;
+    }
+
+    // Forgets every string; the chunks are kept for reuse. Only safe when no
+    // handle from before the clear will be read again.
+    public synchronized void clear() {
+        chunkCount = 0;
+        chunkPos = CHUNK_SIZE;
+        if (dedup) {
+            Arrays.fill(decoded, 0, count, null);
+            Arrays.fill(table, 0);
+            count = 0;
+        }
+    }
+}
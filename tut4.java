@@ -1,57 +1,44 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Scanner;
 
-// Person class to store individual details
-class Person {
-    private int number;
-    private String name;
-    private double salary;
-    private String occupation;
-    
-    // Constructor
-    public Person(int number, String name, double salary, String occupation) {
-        this.number = number;
-        this.name = name;
-        this.salary = salary;
-        this.occupation = occupation;
-    }
-    
-    // Getter methods
-    public int getNumber() { return number; }
-    public String getName() { return name; }
-    public double getSalary() { return salary; }
-    public String getOccupation() { return occupation; }
-    
-    // Method to display person details in a formatted way
-    public void displayDetails() {
-        System.out.println("\n=======================================");
-        System.out.println("        PERSON DETAILS - A" + number);
-        System.out.println("=======================================");
-        System.out.println("Number        : A" + number);
-        System.out.println("Name          : " + name);
-        System.out.println("Salary        : $" + String.format("%.2f", salary));
-        System.out.println("Occupation    : " + occupation);
-        System.out.println("=======================================");
-    }
-}
-
 public class tut4 {
-    public static void main(String[] args) {
+    private static final int MAX_LISTED_IDS = 100;
+    
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("--batch")) {
+            runBatch(args.length > 1 ? args[1] : null);
+            return;
+        }
         Scanner scanner = new Scanner(System.in);
         
         System.out.println("==============================================");
         System.out.println("    PERSON MANAGEMENT SYSTEM");
         System.out.println("==============================================");
         
+        // Saved people from earlier runs (shared with the GUI version)
+        PersonDatabase database = PersonDatabase.open(PersonRecordFile.DEFAULT_PATH);
+        PersonColumns people = loadSaved(database);
+        int saved = people.size();
+        if (saved > 0) {
+            System.out.println("Loaded " + saved + " saved people from " + PersonRecordFile.DEFAULT_PATH);
+        }
+        
         // Step 1: Get array size
         System.out.print("Enter the number of people: ");
         int size = scanner.nextInt();
         
-        // Arrays to store data
+        // Arrays for the people typed in this session
         int[] numbers = new int[size];
         String[] names = new String[size];
         double[] salaries = new double[size];
         String[] occupations = new String[size];
-        Person[] people = new Person[size];
         
         // Step 2: Get numbers from user
         System.out.println("\nEnter " + size + " numbers for people:");
@@ -87,27 +74,35 @@ public class tut4 {
             occupations[i] = scanner.nextLine();
         }
         
-        // Step 6: Create Person objects
+        // Step 6: Add the new people after the saved ones and journal them;
+        // IDs must stay unique, as rowOf and the GUI's index expect
         for (int i = 0; i < size; i++) {
-            people[i] = new Person(numbers[i], names[i], salaries[i], occupations[i]);
+            if (people.rowOf(numbers[i]) >= 0) {
+                System.out.println("❌ ID A" + numbers[i] + " already exists, " + names[i] + " was not added!");
+                continue;
+            }
+            String problem = PersonStore.textProblem(names[i], occupations[i]);
+            if (problem != null) {
+                System.out.println("❌ A" + numbers[i] + " was not added: " + problem + "!");
+                continue;
+            }
+            people.add(numbers[i], names[i], salaries[i], occupations[i]);
+            database.logAdd(numbers[i], names[i], salaries[i], occupations[i]);
         }
+        // Fold the journal into a fresh snapshot (close() waits for it)
+        database.compactInBackground(people.size(), people, database.rotate());
+        database.close();
+        size = people.size();
         
         // Step 7: Display all people in table format
-        System.out.println("\n==============================================");
-        System.out.println("           ALL PEOPLE SUMMARY");
-        System.out.println("==============================================");
-        System.out.printf("%-8s %-15s %-12s %-15s%n", "ID", "Name", "Salary", "Occupation");
-        System.out.println("----------------------------------------------");
-        for (int i = 0; i < size; i++) {
-            System.out.printf("A%-7d %-15s $%-11.2f %-15s%n", 
-                people[i].getNumber(), 
-                people[i].getName(), 
-                people[i].getSalary(), 
-                people[i].getOccupation());
-        }
-        System.out.println("----------------------------------------------");
+        PrintWriter out = bufferedStdout();
+        writeSummary(out, people);
         
-        // Step 8: Search functionality
+        // Step 8: Payroll summary by occupation
+        printPayrollSummary(out, people);
+        out.flush();
+        
+        // Step 9: Search functionality
         while (true) {
             System.out.println("\n==============================================");
             System.out.println("Search for a person by their number:");
@@ -120,20 +115,18 @@ public class tut4 {
             }
             
             // Search for the person
-            boolean found = false;
-            for (int i = 0; i < size; i++) {
-                if (people[i].getNumber() == searchNumber) {
-                    people[i].displayDetails();
-                    found = true;
-                    break;
-                }
-            }
-            
-            if (!found) {
+            int row = people.rowOf(searchNumber);
+            if (row >= 0) {
+                new Person(people.id(row), people.name(row), people.salary(row), people.occupation(row)).displayDetails();
+            } else {
                 System.out.println("❌ Person with number A" + searchNumber + " not found!");
                 System.out.println("Available numbers are:");
-                for (int i = 0; i < size; i++) {
-                    System.out.print("A" + people[i].getNumber() + " ");
+                int listed = Math.min(size, MAX_LISTED_IDS);
+                for (int i = 0; i < listed; i++) {
+                    System.out.print("A" + people.id(i) + " ");
+                }
+                if (size > listed) {
+                    System.out.print("... and " + (size - listed) + " more");
                 }
                 System.out.println();
             }
@@ -141,4 +134,213 @@ public class tut4 {
         
         scanner.close();
     }
+    
+    // Non-interactive mode: java tut4 --batch [file]
+    // Reads the answers the prompts ask for, in the same order, from the file
+    // (or stdin): the count, the numbers, one name per line, the salaries, one
+    // occupation per line, then numbers to search for up to -1 or end of input.
+    // Input goes through InputTokenizer instead of Scanner, and the summary and
+    // search results are written through one buffered writer. The new people go
+    // straight into a fresh snapshot rather than the journal, so rerunning the
+    // same input after a crash is enough to recover it.
+    private static void runBatch(String file) throws IOException {
+        long start = System.nanoTime();
+        PersonDatabase database = PersonDatabase.open(PersonRecordFile.DEFAULT_PATH);
+        PersonColumns people = loadSaved(database);
+        int saved = people.size();
+        long reading = System.nanoTime();
+        
+        int[] searches;
+        int searchCount = 0;
+        try (InputStream in = file == null ? System.in : Files.newInputStream(Path.of(file))) {
+            InputTokenizer input = new InputTokenizer(in);
+            int size = input.nextInt();
+            int[] numbers = new int[size];
+            String[] names = new String[size];
+            double[] salaries = new double[size];
+            for (int i = 0; i < size; i++) {
+                numbers[i] = input.nextInt();
+            }
+            input.nextLine();
+            for (int i = 0; i < size; i++) {
+                names[i] = input.nextLine();
+            }
+            for (int i = 0; i < size; i++) {
+                salaries[i] = input.nextDouble();
+            }
+            input.nextLine();
+            for (int i = 0; i < size; i++) {
+                String occupation = input.nextLine();
+                if (people.rowOf(numbers[i]) >= 0) {
+                    System.err.println("❌ ID A" + numbers[i] + " already exists, " + names[i] + " was not added!");
+                    continue;
+                }
+                String problem = PersonStore.textProblem(names[i], occupation);
+                if (problem != null) {
+                    System.err.println("❌ A" + numbers[i] + " was not added: " + problem + "!");
+                    continue;
+                }
+                people.add(numbers[i], names[i], salaries[i], occupation);
+            }
+            
+            searches = new int[64];
+            while (input.hasNext()) {
+                int searchNumber = input.nextInt();
+                if (searchNumber == -1) {
+                    break;
+                }
+                if (searchCount == searches.length) {
+                    searches = Arrays.copyOf(searches, searchCount * 2);
+                }
+                searches[searchCount++] = searchNumber;
+            }
+        }
+        long loaded = System.nanoTime();
+        database.compactInBackground(people.size(), people, database.rotate());
+        
+        PrintWriter out = bufferedStdout();
+        writeSummary(out, people);
+        printPayrollSummary(out, people);
+        int found = 0;
+        for (int i = 0; i < searchCount; i++) {
+            int row = people.rowOf(searches[i]);
+            if (row >= 0) {
+                writeDetails(out, people, row);
+                found++;
+            } else {
+                out.println("❌ Person with number A" + searches[i] + " not found!");
+            }
+        }
+        out.flush();
+        database.close();
+        
+        long finished = System.nanoTime();
+        System.err.printf("Batch: %d saved + %d new people read in %.1f ms (%,.0f rows/s); %d of %d numbers found; %.1f ms in total%n",
+            saved, people.size() - saved, (loaded - reading) / 1e6, (people.size() - saved) * 1e9 / Math.max(1, loaded - reading),
+            found, searchCount, (finished - start) / 1e6);
+    }
+    
+    // The snapshot first, then whatever the journal recorded after it
+    private static PersonColumns loadSaved(PersonDatabase database) throws IOException {
+        PersonRecordFile snapshot = database.snapshot();
+        PersonColumns people = new PersonColumns(snapshot.size() + 16);
+        for (int i = 0; i < snapshot.size(); i++) {
+            people.add(snapshot.id(i), snapshot.name(i), snapshot.salary(i), snapshot.occupation(i));
+        }
+        database.replay(new PersonJournal.Listener() {
+            @Override
+            public void added(int id, String name, double salary, String occupation) {
+                String problem = PersonStore.textProblem(name, occupation);
+                if (problem != null) {
+                    System.err.println("Skipping journalled person A" + id + ": " + problem);
+                    return;
+                }
+                people.add(id, name, salary, occupation);
+            }
+            
+            @Override
+            public void cleared() {
+                people.clear();
+            }
+        });
+        return people;
+    }
+    
+    private static PrintWriter bufferedStdout() {
+        return new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 64 * 1024));
+    }
+    
+    // One line per person, laid out like printf("A%-7d %-15s $%-11.2f %-15s%n")
+    // but built by hand, which is several times faster for large tables
+    private static void writeSummary(PrintWriter out, PersonColumns people) {
+        out.println("\n==============================================");
+        out.println("           ALL PEOPLE SUMMARY");
+        out.println("==============================================");
+        out.printf("%-8s %-15s %-12s %-15s%n", "ID", "Name", "Salary", "Occupation");
+        out.println("----------------------------------------------");
+        StringBuilder line = new StringBuilder(128);
+        for (int i = 0; i < people.size(); i++) {
+            line.setLength(0);
+            line.append('A').append(people.id(i));
+            pad(line, 0, 8);
+            line.append(' ');
+            int field = line.length();
+            pad(line.append(people.name(i)), field, 15);
+            line.append(" $");
+            field = line.length();
+            appendMoney(line, people.salary(i));
+            pad(line, field, 11);
+            line.append(' ');
+            field = line.length();
+            pad(line.append(people.occupation(i)), field, 15);
+            out.println(line);
+        }
+        out.println("----------------------------------------------");
+    }
+    
+    // Left-justifies the field starting at `start` to `width`, like %-<width>s
+    private static void pad(StringBuilder line, int start, int width) {
+        for (int i = line.length() - start; i < width; i++) {
+            line.append(' ');
+        }
+    }
+    
+    // Same digits as %.2f. Values that are exactly a whole number of cents (which
+    // is what people type) are formatted directly; anything else, negative values
+    // included, goes through String.format so the rounding stays identical.
+    private static void appendMoney(StringBuilder line, double value) {
+        long cents = Math.round(value * 100);
+        if (Double.doubleToRawLongBits(value) < 0 || cents >= 1_000_000_000_000_000L || cents / 100.0 != value) {
+            line.append(String.format("%.2f", value));
+            return;
+        }
+        long fraction = cents % 100;
+        line.append(cents / 100).append('.');
+        if (fraction < 10) {
+            line.append('0');
+        }
+        line.append(fraction);
+    }
+    
+    // Person.displayDetails() written to the batch output
+    private static void writeDetails(PrintWriter out, PersonColumns people, int row) {
+        int number = people.id(row);
+        StringBuilder money = new StringBuilder(16);
+        appendMoney(money, people.salary(row));
+        out.println("\n=======================================");
+        out.println("        PERSON DETAILS - A" + number);
+        out.println("=======================================");
+        out.println("Number        : A" + number);
+        out.println("Name          : " + people.name(row));
+        out.println("Salary        : $" + money);
+        out.println("Occupation    : " + people.occupation(row));
+        out.println("=======================================");
+    }
+    
+    // Head count, total, average, median and 90th percentile salary per occupation
+    private static void printPayrollSummary(PrintWriter out, PersonColumns people) {
+        if (people.size() == 0) {
+            return;
+        }
+        int[] counts = people.countByOccupation();
+        double[] totals = people.totalSalaryByOccupation();
+        double[][] sortedByOccupation = people.sortedSalariesByOccupation();
+        
+        out.println("\n==============================================");
+        out.println("           PAYROLL SUMMARY");
+        out.println("==============================================");
+        out.printf("%-15s %6s %13s %11s %11s %11s%n", "Occupation", "Count", "Total", "Average", "Median", "P90");
+        out.println("----------------------------------------------");
+        for (int code = 0; code < people.occupationCount(); code++) {
+            double[] sorted = sortedByOccupation[code];
+            out.printf("%-15s %6d %13.2f %11.2f %11.2f %11.2f%n",
+                people.occupationName(code), counts[code], totals[code], totals[code] / counts[code],
+                PersonColumns.percentile(sorted, 50), PersonColumns.percentile(sorted, 90));
+        }
+        double[] all = people.sortedSalaries(-1);
+        out.println("----------------------------------------------");
+        out.printf("%-15s %6d %13.2f %11.2f %11.2f %11.2f%n",
+            "All", people.size(), people.totalSalary(), people.averageSalary(),
+            PersonColumns.percentile(all, 50), PersonColumns.percentile(all, 90));
+    }
 }